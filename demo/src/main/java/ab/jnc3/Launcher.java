@@ -18,6 +18,7 @@
 package ab.jnc3;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -158,8 +159,10 @@ public class Launcher implements BasicApp {
   @Override
   public void close() {}
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
     Screen screen = new Screen();
+    Integer rfbPort = Integer.getInteger("rfb.port"); // -Drfb.port=5900 to watch it remotely
+    if (rfbPort != null) screen.frameListener = new RfbServer(screen, rfbPort);
     Basic basic = new Basic3(screen, null);
     Launcher launcher = new Launcher();
     launcher.screen = screen;
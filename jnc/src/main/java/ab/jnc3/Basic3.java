@@ -23,10 +23,10 @@ import java.awt.*;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
-import java.awt.image.IndexColorModel;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.WeakHashMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -47,6 +47,9 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
   private BasicApp runningApp;
   private final CancellationException stop = new CancellationException();
   private int[] toAnsi;
+  private final Rectangle damage = new Rectangle(-1, -1);
+  private final Map<TextMode, BufferedImage> images = new WeakHashMap<>(); // modes are shared, reused
+  private final Map<TextMode, int[]> ansiColors = new WeakHashMap<>();
 
   public Basic3(Screen screen, Tui tui) {
     this.screen = screen;
@@ -112,15 +115,13 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
   private void setMode(TextMode mode) {
     this.mode = mode;
     Dimension r = mode.size;
-    IndexColorModel colorModel = mode.colorMap == null ? null : new IndexColorModel(
-        8, mode.colorMap.length, mode.colorMap, 0, false, -1, DataBuffer.TYPE_BYTE);
     paper = mode.bgColor;
     color = mode.fgColor;
     ymax = r.height - 1;
-    if (screen != null) screen.image = colorModel == null
+    if (screen != null) screen.image = images.computeIfAbsent(mode, m -> m.colorModel == null
         ? new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_RGB)
-        : new BufferedImage(r.width, r.height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
-    if (mode.colorMap != null) toAnsi = findAnsiColors(mode.colorMap);
+        : new BufferedImage(r.width, r.height, BufferedImage.TYPE_BYTE_INDEXED, m.colorModel));
+    if (mode.colorMap != null) toAnsi = ansiColors.computeIfAbsent(mode, m -> findAnsiColors(m.colorMap));
     cls();
   }
 
@@ -210,6 +211,7 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
   @Override
   public void plot(int x, int y) {
     screen.image.setRGB(x, ymax - y, mode.getRgbColor(color));
+    damage.add(new Rectangle(x, ymax - y, 1, 1));
     this.x = x;
     this.y = y;
   }
@@ -218,7 +220,9 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
   public void draw(int x, int y) {
     Graphics2D graphics = screen.image.createGraphics();
     graphics.setColor(new Color(mode.getRgbColor(color)));
-    graphics.draw(new Line2D.Double(this.x, ymax - this.y, x, ymax - y));
+    Line2D line = new Line2D.Double(this.x, ymax - this.y, x, ymax - y);
+    graphics.draw(line);
+    damage.add(graphics.getStroke().createStrokedShape(line).getBounds());
     this.x = x;
     this.y = y;
   }
@@ -231,7 +235,9 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
     double ry = Math.min(r * pixelAspectRatio, r);
     Graphics2D graphics = this.screen.image.createGraphics();
     graphics.setColor(new Color(mode.getRgbColor(color)));
-    graphics.draw(new Ellipse2D.Double(x - rx, ymax - y - ry, rx + rx, ry + ry));
+    Ellipse2D ellipse = new Ellipse2D.Double(x - rx, ymax - y - ry, rx + rx, ry + ry);
+    graphics.draw(ellipse);
+    damage.add(graphics.getStroke().createStrokedShape(ellipse).getBounds());
   }
 
   @Override
@@ -249,13 +255,19 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
       this.screen.setBackground(rgb);
       graphics.setBackground(new Color(rgb));
       graphics.clearRect(0, 0, mode.size.width, mode.size.height);
+      damage.add(new Rectangle(mode.size));
     }
   }
 
   @Override
   public void update() {
     if (runningApp == null) throw stop;
-    if (screen == null) tui.update(); else screen.update();
+    if (screen == null) tui.update();
+    else if (damage.isEmpty()) screen.update();
+    else {
+      screen.update(damage);
+      damage.setBounds(0, 0, -1, -1);
+    }
   }
 
   @Override
@@ -288,9 +300,12 @@ public class Basic3 implements Basic { // FIXME: 2024-07-28 delete and redesign
 
   @Override
   public void printAt(int x, int y, String s) {
-    if (tui == null) mode.font.drawString(s, x * mode.font.width, y * mode.font.height, screen.image,
-        mode.getRgbColor(color), mode.getRgbColor(paper));
-    else tui.print(x, y, s, getAnsiAttr(paper) << 4 | getAnsiAttr(color));
+    if (tui == null) {
+      x *= mode.font.width;
+      y *= mode.font.height;
+      mode.font.drawString(s, x, y, screen.image, mode.getRgbColor(color), mode.getRgbColor(paper));
+      damage.add(new Rectangle(x, y, s.length() * mode.font.width, mode.font.height));
+    } else tui.print(x, y, s, getAnsiAttr(paper) << 4 | getAnsiAttr(color));
   }
 
   @Override
@@ -22,16 +22,26 @@ import java.awt.image.DataBuffer;
 import java.awt.image.IndexColorModel;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * The modes and fonts of the static methods are parsed once and shared by the process.
+ * Every call returns a copy of the mode, its font is shared and frozen, use font.copy() to put extra characters.
+ */
 public class TextMode {
 
+  private static final Map<String, BitmapFont> FONTS = new ConcurrentHashMap<>();
+  private static final Map<String, TextMode> MODES = new ConcurrentHashMap<>();
+
   public final BitmapFont font;
   public final Dimension size;
   public final Dimension aspectRatio = new Dimension(4, 3);
   public final int[] colorMap;
   public final int bgColor;
   public final int fgColor;
-  private final IndexColorModel colorModel;
+  final IndexColorModel colorModel;
 
   public TextMode(BitmapFont font, int width, int height, int[] colorMap, int bgColor, int fgColor) {
     this.font = font;
@@ -51,6 +61,19 @@ public class TextMode {
     this.colorModel = null;
   }
 
+  /**
+   * The fields are public and mutable, so the shared modes are handed out as copies.
+   */
+  private TextMode(TextMode mode) {
+    this.font = mode.font;
+    this.size = new Dimension(mode.size);
+    this.aspectRatio.setSize(mode.aspectRatio);
+    this.colorMap = mode.colorMap == null ? null : mode.colorMap.clone();
+    this.bgColor = mode.bgColor;
+    this.fgColor = mode.fgColor;
+    this.colorModel = mode.colorModel;
+  }
+
   public int getRgbColor(int indexed) {
     return colorMap == null ? indexed : colorMap[indexed];
   }
@@ -59,16 +82,37 @@ public class TextMode {
     return colorModel == null ? rgb : ((byte[]) colorModel.getDataElements(rgb, null))[0];
   }
 
+  /**
+   * Computed outside of the map, suppliers may use the cache themselves.
+   */
+  private static <T> T cached(Map<String, T> cache, String key, Supplier<T> supplier) {
+    T value = cache.get(key);
+    if (value != null) return value;
+    value = supplier.get();
+    T previous = cache.putIfAbsent(key, value);
+    return previous == null ? value : previous;
+  }
+
+  private static TextMode cachedMode(String key, Supplier<TextMode> supplier) {
+    return new TextMode(cached(MODES, key, () -> new TextMode(supplier.get())));
+  }
+
   private static BitmapFont fontResource(String resource) {
-    try {
-      return BitmapFont.fromPsf(TextMode.class.getResourceAsStream(resource).readAllBytes());
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
-    }
+    return cached(FONTS, resource, () -> {
+      try {
+        return BitmapFont.fromPsf(TextMode.class.getResourceAsStream(resource).readAllBytes()).freeze();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
   }
 
   private static BitmapFont zxFont() {
-    BitmapFont font = fontResource("/jnc3/zx.psf");
+    return cached(FONTS, "zx", TextMode::createZxFont);
+  }
+
+  private static BitmapFont createZxFont() {
+    BitmapFont font = fontResource("/jnc3/zx.psf").copy();
     int[] bitmap = {0x01, 0x03, 0x07, 0x0F, 0x1F, 0x3F, 0x7F, 0xFF, 0xFE, 0xFC, 0xF8, 0xF0, 0xE0, 0xC0, 0x80, 0x00,
         0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0x80, 0xFF,
         0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0xFF, 0x01, 0x01, 0x01, 0x01, 0x01, 0x01, 0x01, 0xFF,
@@ -78,21 +122,25 @@ public class TextMode {
     for (int i = 0; i < charset.length; i++) font.put(charset[i], i + 0x10);
     font.put('\u00A9', 0x7F); // (c)
     font.cacheBitmap();
-    return font;
+    return font.freeze();
   }
 
   public static TextMode zx() {
-    return new TextMode(zxFont(), 256, 192, new int[]{
+    return cachedMode("zx", () -> new TextMode(zxFont(), 256, 192, new int[]{
         0x000000, 0x0000C0, 0xC00000, 0xC000C0, 0x00C000, 0x00C0C0, 0xC0C000, 0xC0C0C0,
-        0x000000, 0x0000FF, 0xFF0000, 0xFF00FF, 0x00FF00, 0x00FFFF, 0xFFFF00, 0xFFFFFF}, 7, 0);
+        0x000000, 0x0000FF, 0xFF0000, 0xFF00FF, 0x00FF00, 0x00FFFF, 0xFFFF00, 0xFFFFFF}, 7, 0));
   }
 
   public static TextMode c64() {
-    BitmapFont font = fontResource("/jnc3/c64.psf");
+    return cachedMode("c64", TextMode::createC64);
+  }
+
+  private static TextMode createC64() {
+    BitmapFont font = fontResource("/jnc3/c64.psf").copy();
     int[] charset = {'\u25E2', 0x10, '\u25E3', 0x11, '\u25E4', 0xA9, '\u25E5', 0xDF, // triangles
         '\u2551', 0xA5, '\u255A', 0xCC, '\u2550', 0xAF, '\u255D', 0xBA, '\u2562', 0xA7};
     for (int i = 0; i < charset.length; i += 2) font.put((char) charset[i], charset[i + 1]);
-    return new TextMode(font, 320, 200, new int[]{
+    return new TextMode(font.freeze(), 320, 200, new int[]{
         0x000000, 0xFFFFFF, 0x9F4E44, 0x6ABFC6, 0xA057A3, 0x5CAB5E, 0x50459B, 0xC9D487,
         0xA1683C, 0x6D5412, 0xCB7E75, 0x626262, 0x898989, 0x9AE29B, 0x887ECB, 0xADADAD}, 6, 14);
   }
@@ -106,41 +154,48 @@ public class TextMode {
   }
 
   public static TextMode cga16() {
-    return new TextMode(cgaFont(), 160, 100, COLOR_MAP_CGA, 0, 7);
+    return cachedMode("cga16", () -> new TextMode(cgaFont(), 160, 100, COLOR_MAP_CGA, 0, 7));
   }
 
   public static TextMode cgaHigh() {
-    return new TextMode(cgaFont(), 640, 200, new int[]{0, 0xFFFFFF}, 1, 0);
+    return cachedMode("cgaHigh", () -> new TextMode(cgaFont(), 640, 200, new int[]{0, 0xFFFFFF}, 1, 0));
   }
 
   public static TextMode cga4() {
-    return new TextMode(cgaFont(), 320, 200,
-        new int[]{COLOR_MAP_CGA[0], COLOR_MAP_CGA[3], COLOR_MAP_CGA[5], COLOR_MAP_CGA[7]}, 0, 1);
+    return cachedMode("cga4", () -> new TextMode(cgaFont(), 320, 200,
+        new int[]{COLOR_MAP_CGA[0], COLOR_MAP_CGA[3], COLOR_MAP_CGA[5], COLOR_MAP_CGA[7]}, 0, 1));
   }
 
   public static TextMode ega() {
-    return new TextMode(fontResource("/jnc3/vga14.psf"), 640, 350, COLOR_MAP_CGA, 0, 7);
+    return cachedMode("ega", () ->
+        new TextMode(fontResource("/jnc3/vga14.psf"), 640, 350, COLOR_MAP_CGA, 0, 7));
   }
 
   public static TextMode vgaHigh() {
-    return new TextMode(fontResource("/jnc3/vga16.psf"), 640, 480, COLOR_MAP_CGA, 0, 7);
+    return cachedMode("vgaHigh", () ->
+        new TextMode(fontResource("/jnc3/vga16.psf"), 640, 480, COLOR_MAP_CGA, 0, 7));
   }
 
   public static TextMode vgaText() {
-    return new TextMode(fontResource("/jnc3/vga9x16.psf"), 720, 480, COLOR_MAP_CGA, 0, 7);
+    return cachedMode("vgaText", () ->
+        new TextMode(fontResource("/jnc3/vga9x16.psf"), 720, 480, COLOR_MAP_CGA, 0, 7));
   }
 
   public static TextMode defaultMode() {
-    return new TextMode(320, 240);
+    return cachedMode("default", () -> new TextMode(320, 240));
   }
 
   public static TextMode msx() {
-    BitmapFont font = fontResource("/jnc3/msx.psf");
+    return cachedMode("msx", TextMode::createMsx);
+  }
+
+  private static TextMode createMsx() {
+    BitmapFont font = fontResource("/jnc3/msx.psf").copy();
     int[] charset = {'\u25E2', 0x84, '\u25E4', 0x85,
         '\u2551', 0x16, '\u255A', 0x1A, '\u2550', 0x17, '\u255D', 0x1B, '\u2562', 0x16};
     for (int i = 0; i < charset.length; i += 2) font.put((char) charset[i], charset[i + 1]);
     // https://en.wikipedia.org/wiki/List_of_8-bit_computer_hardware_graphics
-    return new TextMode(font, 240, 192, new int[]{
+    return new TextMode(font.freeze(), 240, 192, new int[]{
         0x010101, 0x000000, 0x3EB849, 0x74D07D, 0x5955E0, 0x8076F1, 0xB95E51, 0x65DBEF,
         0xDB6559, 0xFF897D, 0xCCC35E, 0xDED087, 0x3AA241, 0xB766B5, 0xCCCCCC, 0xFFFFFF}, 4, 15);
   }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextModeTest {
+
+  @Test
+  void cached() {
+    assertNotSame(TextMode.zx(), TextMode.zx());
+    assertSame(TextMode.zx().font, TextMode.zx().font);
+    assertSame(TextMode.zx().font, TextMode.defaultMode().font);
+    assertSame(TextMode.cga16().font, TextMode.cga4().font);
+    assertEquals(0x11, TextMode.zx().font.get('◤'));
+    assertEquals(0xA9, TextMode.c64().font.get('◤'));
+    assertThrows(IllegalStateException.class, () -> TextMode.c64().font.put('◤', 0x10));
+    assertThrows(IllegalStateException.class, () -> TextMode.zx().font.multiply(2, 2));
+    BitmapFont font = TextMode.c64().font.copy();
+    font.put('◤', 0x10);
+    assertEquals(0xA9, TextMode.c64().font.get('◤'));
+    TextMode.zx().size.width = 1;
+    TextMode.zx().colorMap[0] = 1;
+    assertEquals(256, TextMode.zx().size.width);
+    assertEquals(0, TextMode.zx().getRgbColor(0));
+  }
+
+}
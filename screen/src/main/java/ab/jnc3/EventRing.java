@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * Preallocated ring buffer of input events packed in long, polling it allocates nothing.
+ * Event layout: type in bits 60-63, modifiers in bits 56-59, the rest depends on the type.
+ * Zero is never a valid event. When the ring is full new events are dropped and counted.
+ * Any thread can offer, one thread polls.
+ */
+public class EventRing {
+
+  public static final int WINDOW = 1; // code
+  public static final int KEY_TYPED = 2; // key char, primary level unicode, modifiers
+  public static final int KEY_PRESSED = 3; // key code, modifiers
+  public static final int KEY_DOWN = 4; // key code, game controller
+  public static final int KEY_UP = 5; // key code, game controller
+  public static final int MOUSE_PRESSED = 6; // button
+  public static final int MOUSE_RELEASED = 7; // button
+  public static final int MOUSE_MOVED = 8; // relative x y, window x y
+  public static final int MOUSE_WHEEL = 9; // rotation
+
+  public static final int CLOSE = 0;
+  public static final int MAXIMIZE = 1;
+  public static final int RESTORE = 2;
+
+  public static final int CTRL = 1;
+  public static final int ALT = 2;
+  public static final int SHIFT = 4;
+
+  private final long[] ring;
+  private final int mask;
+  private volatile long head; // next to poll
+  private volatile long tail; // next to offer
+  private volatile long dropped;
+
+  /**
+   * @param capacity rounded up to a power of two
+   */
+  public EventRing(int capacity) {
+    ring = new long[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+    mask = ring.length - 1;
+  }
+
+  /**
+   * @return false if the ring is full and the event is dropped
+   */
+  public synchronized boolean offer(long event) {
+    long t = tail;
+    if (t - head >= ring.length) {
+      dropped++;
+      return false;
+    }
+    ring[(int) t & mask] = event;
+    tail = t + 1;
+    return true;
+  }
+
+  /**
+   * @return the oldest event or 0 if empty
+   */
+  public long poll() {
+    long h = head;
+    if (h == tail) return 0;
+    long event = ring[(int) h & mask];
+    head = h + 1;
+    return event;
+  }
+
+  public boolean isEmpty() {
+    return head == tail;
+  }
+
+  public void clear() {
+    head = tail;
+  }
+
+  public long getDropped() {
+    return dropped;
+  }
+
+  private static long event(int type, int modifiers, long data) {
+    return (long) type << 60 | (long) (modifiers & 0xF) << 56 | data & 0xFF_FFFF_FFFF_FFFFL;
+  }
+
+  public static long window(int code) {
+    return event(WINDOW, 0, code);
+  }
+
+  public static long keyTyped(char c, char primaryLevelUnicode, int modifiers) {
+    return event(KEY_TYPED, modifiers, (long) primaryLevelUnicode << 16 | c);
+  }
+
+  /**
+   * @param type KEY_PRESSED, KEY_DOWN or KEY_UP
+   */
+  public static long key(int type, int keyCode, int modifiers) {
+    return event(type, modifiers, keyCode & 0xFFFF_FFFFL);
+  }
+
+  /**
+   * @param type MOUSE_PRESSED or MOUSE_RELEASED
+   */
+  public static long mouseButton(int type, int button) {
+    return event(type, 0, button);
+  }
+
+  private static long s14(int v) {
+    return Math.max(-0x2000, Math.min(0x1FFF, v)) & 0x3FFF;
+  }
+
+  /**
+   * Coordinates are limited to 14 bit signed values.
+   */
+  public static long mouseMoved(int dx, int dy, int x, int y) {
+    return event(MOUSE_MOVED, 0, s14(dx) << 42 | s14(dy) << 28 | s14(x) << 14 | s14(y));
+  }
+
+  public static long mouseWheel(int rotation) {
+    return event(MOUSE_WHEEL, 0, rotation & 0xFFFF_FFFFL);
+  }
+
+  public static int getType(long event) {
+    return (int) (event >>> 60);
+  }
+
+  public static int getModifiers(long event) {
+    return (int) (event >>> 56) & 0xF;
+  }
+
+  /**
+   * @return window code, key code, button or wheel rotation
+   */
+  public static int getCode(long event) {
+    return (int) event;
+  }
+
+  public static char getKeyChar(long event) {
+    return (char) event;
+  }
+
+  public static char getPrimaryLevelUnicode(long event) {
+    return (char) (event >> 16);
+  }
+
+  private static int getS14(long event, int shift) {
+    return (int) (event << 50 - shift >> 50);
+  }
+
+  public static int getDx(long event) {
+    return getS14(event, 42);
+  }
+
+  public static int getDy(long event) {
+    return getS14(event, 28);
+  }
+
+  public static int getX(long event) {
+    return getS14(event, 14);
+  }
+
+  public static int getY(long event) {
+    return getS14(event, 0);
+  }
+
+  private static String fromKeyChar(char c) {
+    switch (c) {
+      case KeyEvent.VK_ENTER: return "Enter";
+      case KeyEvent.VK_ESCAPE: return "Esc";
+      case KeyEvent.VK_TAB: return "Tab";
+      case KeyEvent.VK_BACK_SPACE: return "Backspace";
+      case KeyEvent.VK_DELETE: return "Delete";
+      default: return String.format("typed \\u%04X", (int) c);
+    }
+  }
+
+  private static String fromKeyCode(int keyCode) {
+    switch (keyCode) {
+      case KeyEvent.VK_CONTROL: return "Control";
+      case KeyEvent.VK_ALT: return "Alt";
+      case KeyEvent.VK_SHIFT: return "Shift";
+      case KeyEvent.VK_F1: return "F1";
+      case KeyEvent.VK_F2: return "F2";
+      case KeyEvent.VK_F3: return "F3";
+      case KeyEvent.VK_F4: return "F4";
+      case KeyEvent.VK_F5: return "F5";
+      case KeyEvent.VK_F6: return "F6";
+      case KeyEvent.VK_F7: return "F7";
+      case KeyEvent.VK_F8: return "F8";
+      case KeyEvent.VK_F9: return "F9";
+      case KeyEvent.VK_F10: return "F10";
+      case KeyEvent.VK_F11: return "F11";
+      case KeyEvent.VK_F12: return "F12";
+      case KeyEvent.VK_LEFT: return "Left";
+      case KeyEvent.VK_DOWN: return "Down";
+      case KeyEvent.VK_UP: return "Up";
+      case KeyEvent.VK_RIGHT: return "Right";
+      case KeyEvent.VK_HOME: return "Home";
+      case KeyEvent.VK_PAGE_UP: return "PageUp";
+      case KeyEvent.VK_PAGE_DOWN: return "PageDown";
+      case KeyEvent.VK_END: return "End";
+      case KeyEvent.VK_INSERT: return "Insert";
+      case KeyEvent.VK_ENTER: return "Enter";
+      case KeyEvent.VK_ESCAPE: return "Esc";
+      case KeyEvent.VK_TAB: return "Tab";
+      case KeyEvent.VK_BACK_SPACE: return "Backspace";
+      case KeyEvent.VK_DELETE: return "Delete";
+      case KeyEvent.VK_SPACE: return "Spacebar";
+      default: return Character.toString(keyCode);
+    }
+  }
+
+  /**
+   * Creates a sensible text describing the event, the notation of Screen.keyListener.
+   */
+  public static String toString(long event) {
+    int modifiers = getModifiers(event);
+    StringBuilder keyNotation = new StringBuilder();
+    if ((modifiers & CTRL) != 0) keyNotation.append("Ctrl+");
+    if ((modifiers & ALT) != 0) keyNotation.append("Alt+");
+    switch (getType(event)) {
+      case WINDOW:
+        switch (getCode(event)) {
+          case CLOSE: return "Close";
+          case MAXIMIZE: return "Maximize";
+          case RESTORE: return "Restore";
+          default: return "Window" + getCode(event);
+        }
+      case KEY_TYPED:
+        char c = getKeyChar(event);
+        char plu = getPrimaryLevelUnicode(event);
+        String key;
+        if (c < 0x20 || c == 0x7F) {
+          key = plu == 0 || plu == c ? fromKeyChar(c) : String.valueOf(plu);
+          if ((modifiers & SHIFT) != 0) key = key.length() < 2 ? key.toUpperCase() : "Shift+" + key;
+        } else key = String.valueOf(c);
+        return keyNotation.append(key).toString();
+      case KEY_PRESSED:
+        if ((modifiers & SHIFT) != 0) keyNotation.append("Shift+");
+        return keyNotation.append(fromKeyCode(getCode(event))).toString();
+      case KEY_DOWN: return "+" + fromKeyCode(getCode(event));
+      case KEY_UP: return "-" + fromKeyCode(getCode(event));
+      case MOUSE_PRESSED: return "Mouse+B" + getCode(event);
+      case MOUSE_RELEASED: return "Mouse-B" + getCode(event);
+      case MOUSE_MOVED:
+        int x = getDx(event);
+        int y = getDy(event);
+        return "Mouse" + (x >= 0 ? "+" : "") + x + "," + (y >= 0 ? "+" : "") + y + "," + getX(event) + "," + getY(event);
+      case MOUSE_WHEEL:
+        int w = getCode(event);
+        return "Mouse" + (w >= 0 ? "+" : "-") + "W" + Math.abs(w);
+      default: return String.format("%016X", event);
+    }
+  }
+
+}
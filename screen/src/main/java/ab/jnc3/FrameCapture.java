@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Records frames in the background. The render thread only copies the frame into a pooled buffer,
+ * the encoder thread writes it to the sink and returns the buffer to the pool. When the pool is empty
+ * the frame is either dropped and counted or the render thread waits, depending on the policy.
+ * Usage: screen.frameListener = new FrameCapture(FrameCapture.png(dir), 8, false);
+ */
+public class FrameCapture implements Consumer<BufferedImage>, AutoCloseable {
+
+  @FunctionalInterface
+  public interface Sink extends AutoCloseable {
+    /**
+     * Encoder thread.
+     * @param frame valid until the method returns
+     */
+    void write(BufferedImage frame, long sequence) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+  }
+
+  private static final class Frame {
+    BufferedImage image;
+    Object row;
+    long sequence;
+  }
+
+  private static final Frame END = new Frame();
+  private final Sink sink;
+  private final boolean block;
+  private final BlockingQueue<Frame> pool;
+  private final BlockingQueue<Frame> queue;
+  private final Thread thread;
+  private final AtomicLong dropped = new AtomicLong();
+  private long sequence;
+  private volatile IOException exception;
+  private volatile boolean open = true;
+
+  /**
+   * @param capacity number of pooled buffers, the maximum queue length
+   * @param block true to wait for a free buffer, false to drop the frame
+   */
+  public FrameCapture(Sink sink, int capacity, boolean block) {
+    this.sink = sink;
+    this.block = block;
+    pool = new ArrayBlockingQueue<>(capacity);
+    queue = new ArrayBlockingQueue<>(capacity + 1);
+    for (int i = 0; i < capacity; i++) pool.add(new Frame());
+    thread = new Thread(this::encode, "capture");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Render thread, counts the dropped frame if the pool is empty.
+   */
+  @Override
+  public void accept(BufferedImage image) {
+    if (!open) return;
+    long sequence = this.sequence++;
+    Frame frame;
+    try {
+      frame = block ? pool.take() : pool.poll();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      frame = null;
+    }
+    if (frame == null) {
+      dropped.incrementAndGet();
+      return;
+    }
+    BufferedImage buffer = frame.image;
+    int w = image.getWidth();
+    int h = image.getHeight();
+    if (buffer == null || buffer.getWidth() != w || buffer.getHeight() != h || buffer.getType() != image.getType()
+        || !buffer.getColorModel().equals(image.getColorModel())) {
+      frame.image = buffer = new BufferedImage(image.getColorModel(),
+          image.getRaster().createCompatibleWritableRaster(), image.isAlphaPremultiplied(), null);
+      frame.row = image.getRaster().getDataElements(0, 0, w, 1, null);
+    }
+    PageFlip.copy(image, buffer, new Rectangle(w, h), frame.row);
+    frame.sequence = sequence;
+    queue.add(frame); // never full
+  }
+
+  private void encode() {
+    try {
+      while (true) {
+        Frame frame = queue.take();
+        if (frame == END) break;
+        try {
+          if (exception == null) sink.write(frame.image, frame.sequence);
+        } catch (IOException e) {
+          exception = e;
+        } catch (RuntimeException e) {
+          exception = new IOException(e);
+        } finally {
+          pool.add(frame); // a blocked accept waits for it
+        }
+      }
+    } catch (InterruptedException ignore) {}
+  }
+
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * @return number of frames offered including dropped
+   */
+  public long getFrames() {
+    return sequence;
+  }
+
+  /**
+   * Writes the queued frames and closes the sink.
+   * @throws UncheckedIOException if the sink failed
+   */
+  @Override
+  public void close() {
+    if (!open) return;
+    open = false;
+    queue.add(END);
+    try {
+      thread.join();
+      sink.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      if (exception == null) exception = e;
+    }
+    if (exception != null) throw new UncheckedIOException(exception);
+  }
+
+  /**
+   * Writes frame000000.png, frame000001.png, etc, the sequence includes dropped frames.
+   */
+  public static Sink png(Path directory) {
+    return (frame, sequence) -> {
+      Path path = directory.resolve(String.format("frame%06d.png", sequence));
+      if (!ImageIO.write(frame, "png", path.toFile())) throw new IOException("png " + path);
+    };
+  }
+
+  /**
+   * Appends frames to one file as 24 bit rgb pixels, for ffmpeg -f rawvideo -pixel_format rgb24.
+   */
+  public static Sink raw(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    return new Sink() {
+      private int[] row = new int[0];
+      private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+      @Override
+      public void write(BufferedImage frame, long sequence) throws IOException {
+        int w = frame.getWidth();
+        if (row.length != w) {
+          row = new int[w];
+          buffer = ByteBuffer.allocateDirect(w * 3);
+        }
+        for (int y = 0; y < frame.getHeight(); y++) {
+          frame.getRGB(0, y, w, 1, row, 0, w);
+          buffer.clear();
+          for (int rgb : row) buffer.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+          buffer.flip();
+          while (buffer.hasRemaining()) channel.write(buffer);
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+
+}
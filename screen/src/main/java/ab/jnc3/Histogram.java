@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with power of two buckets, bucket i counts values in [2^(i-1), 2^i).
+ * Percentiles are reported as the upper bound of the bucket.
+ */
+public class Histogram {
+
+  private final AtomicLongArray buckets = new AtomicLongArray(64);
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long value) {
+    if (value < 0) value = 0;
+    buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+    long m = max.get();
+    while (value > m && !max.compareAndSet(m, value)) m = max.get();
+  }
+
+  public long[] getBuckets() {
+    long[] result = new long[64];
+    for (int i = 0; i < 64; i++) result[i] = buckets.get(i);
+    return result;
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < 64; i++) count += buckets.get(i);
+    return count;
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param q quantile from 0 to 1
+   * @return upper bound of the bucket, 0 if empty
+   */
+  public long getPercentile(double q) {
+    long[] b = getBuckets();
+    long count = 0;
+    for (long n : b) count += n;
+    long rank = (long) Math.ceil(q * count);
+    for (int i = 0; i < 64; i++) {
+      rank -= b[i];
+      if (rank <= 0 && b[i] > 0) return i == 0 ? 0 : Math.min(1L << i, max.get());
+    }
+    return 0;
+  }
+
+  public void reset() {
+    for (int i = 0; i < 64; i++) buckets.set(i, 0);
+    max.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("n=%d p50=%d p90=%d p99=%d max=%d", getCount(),
+        getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), getMax());
+  }
+
+}
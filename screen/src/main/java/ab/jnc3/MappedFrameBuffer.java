@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Screen image in a memory-mapped file, other processes read the frames without copying.
+ * Usage: screen.image = buffer.getImage(); screen.frameListener = buffer;
+ * <p>
+ * File layout, little-endian: magic "JNC3", width, height, format, stride in bytes, palette offset,
+ * pixel offset, 4 bytes reserved, frame sequence as long at offset 32. The sequence is incremented
+ * after every update, readers poll it. Format 1 is 32 bit xRGB pixels, format 2 is 8 bit indices
+ * into the palette of 256 ARGB ints. Rows are not padded, the image stays addressable
+ * with x + y * width as BitmapFont.drawCharSimple expects.
+ * <p>
+ * The image is TYPE_CUSTOM with a DataBuffer over the mapping, so the array based fast paths,
+ * the Presentation scaler, the Tui3 glyph cache and the BitmapFont blitters, do not apply
+ * and fall back to per-pixel access. The sequence is stored with release semantics, a reader that
+ * loads it with acquire semantics sees the whole frame.
+ */
+public class MappedFrameBuffer implements Consumer<BufferedImage>, AutoCloseable {
+
+  public static final int MAGIC = 0x33434E4A;
+  public static final int FORMAT_INT_RGB = 1;
+  public static final int FORMAT_BYTE_INDEXED = 2;
+  public static final int SEQUENCE_OFFSET = 32;
+  private static final int HEADER_SIZE = 64;
+  private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private final FileChannel channel;
+  private final MappedByteBuffer mapped;
+  private final BufferedImage image;
+  private final Object row;
+  private long sequence;
+
+  /**
+   * @param colorModel IndexColorModel for the indexed format, otherwise rgb
+   */
+  public MappedFrameBuffer(Path file, int width, int height, ColorModel colorModel) throws IOException {
+    IndexColorModel palette = colorModel instanceof IndexColorModel ? (IndexColorModel) colorModel : null;
+    int format = palette == null ? FORMAT_INT_RGB : FORMAT_BYTE_INDEXED;
+    int stride = palette == null ? width * 4 : width;
+    int paletteOffset = palette == null ? 0 : HEADER_SIZE;
+    int pixelOffset = palette == null ? HEADER_SIZE : HEADER_SIZE + 0x400;
+    channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    channel.truncate(0);
+    mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, pixelOffset + (long) stride * height);
+    mapped.order(ByteOrder.LITTLE_ENDIAN);
+    mapped.putInt(0, MAGIC).putInt(4, width).putInt(8, height).putInt(12, format).putInt(16, stride)
+        .putInt(20, paletteOffset).putInt(24, pixelOffset).putLong(SEQUENCE_OFFSET, 0);
+    if (palette != null) {
+      for (int i = 0; i < palette.getMapSize(); i++) mapped.putInt(paletteOffset + i * 4, palette.getRGB(i));
+    }
+    ByteBuffer pixels = mapped.duplicate().position(pixelOffset).slice().order(ByteOrder.LITTLE_ENDIAN);
+    WritableRaster raster;
+    if (palette == null) {
+      colorModel = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+      raster = Raster.createPackedRaster(new IntData(pixels.asIntBuffer(), width * height),
+          width, height, width, ((DirectColorModel) colorModel).getMasks(), null);
+    } else {
+      raster = Raster.createInterleavedRaster(new ByteData(pixels, width * height),
+          width, height, width, 1, new int[]{0}, null);
+    }
+    image = new BufferedImage(colorModel, raster, false, null);
+    row = raster.getDataElements(0, 0, width, 1, null);
+  }
+
+  public BufferedImage getImage() {
+    return image;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Publishes the frame. A frame other than the mapped image, the back buffer of page flipping for example,
+   * is copied first if it has the same size and color model.
+   */
+  @Override
+  public void accept(BufferedImage frame) {
+    if (frame != image) {
+      if (frame.getWidth() != image.getWidth() || frame.getHeight() != image.getHeight()
+          || !frame.getColorModel().equals(image.getColorModel())) return;
+      PageFlip.copy(frame, image, new Rectangle(frame.getWidth(), frame.getHeight()), row);
+    }
+    LONG.setRelease(mapped, SEQUENCE_OFFSET, ++sequence);
+  }
+
+  /**
+   * The mapping stays valid until the image is garbage collected.
+   */
+  @Override
+  public void close() {
+    try {
+      mapped.force();
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class IntData extends DataBuffer {
+    private final IntBuffer data;
+
+    IntData(IntBuffer data, int size) {
+      super(TYPE_INT, size);
+      this.data = data;
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+      return data.get(i);
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+      data.put(i, val);
+    }
+  }
+
+  private static class ByteData extends DataBuffer {
+    private final ByteBuffer data;
+
+    ByteData(ByteBuffer data, int size) {
+      super(TYPE_BYTE, size);
+      this.data = data;
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+      return data.get(i) & 0xFF;
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+      data.put(i, (byte) val);
+    }
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer. The app draws into the back buffer, paint reads the front buffer
+ * and they exchange images through the middle one by swapping indices, nobody waits.
+ * The new back buffer receives the damaged areas it has missed, so the app keeps drawing
+ * on top of the last presented frame.
+ */
+class PageFlip {
+
+  private static final int FRESH = 4;
+  private final BufferedImage[] images = new BufferedImage[3];
+  private final Rectangle[] stale = new Rectangle[3];
+  private final AtomicInteger middle = new AtomicInteger(1);
+  private int back = 0; // app
+  private int front = 2; // paint
+  private final Object row;
+
+  public PageFlip(BufferedImage image) {
+    row = image.getRaster().getDataElements(0, 0, image.getWidth(), 1, null);
+    for (int i = 0; i < 3; i++) {
+      images[i] = i == 0 ? image : new BufferedImage(image.getColorModel(),
+          image.getRaster().createCompatibleWritableRaster(), image.isAlphaPremultiplied(), null);
+      stale[i] = new Rectangle(-1, -1);
+    }
+    copy(image, images[1], new Rectangle(image.getWidth(), image.getHeight()));
+    copy(image, images[2], new Rectangle(image.getWidth(), image.getHeight()));
+  }
+
+  public BufferedImage getBack() {
+    return images[back];
+  }
+
+  /**
+   * App thread.
+   * @param damage area changed since the last present, null if everything
+   * @return the next back buffer
+   */
+  public BufferedImage present(Rectangle damage) {
+    BufferedImage image = images[back];
+    Rectangle d = damage == null ? new Rectangle(image.getWidth(), image.getHeight()) : damage;
+    for (int i = 0; i < 3; i++) if (i != back) stale[i].add(d);
+    back = middle.getAndSet(back | FRESH) & 3;
+    Rectangle s = stale[back].intersection(new Rectangle(image.getWidth(), image.getHeight()));
+    if (!s.isEmpty()) copy(image, images[back], s);
+    stale[back].setBounds(0, 0, -1, -1);
+    return images[back];
+  }
+
+  /**
+   * Paint thread.
+   * @return the latest presented frame
+   */
+  public BufferedImage getFront() {
+    if ((middle.get() & FRESH) != 0) front = middle.getAndSet(front) & 3;
+    return images[front];
+  }
+
+  private void copy(BufferedImage from, BufferedImage to, Rectangle r) {
+    copy(from, to, r, row);
+  }
+
+  /**
+   * Copies pixels between images of the same type row by row.
+   * @param row transfer array for at least r.width pixels, see Raster.getDataElements
+   */
+  static void copy(BufferedImage from, BufferedImage to, Rectangle r, Object row) {
+    Raster src = from.getRaster();
+    WritableRaster dst = to.getRaster();
+    for (int y = r.y, yn = r.y + r.height; y < yn; y++) {
+      src.getDataElements(r.x, y, r.width, 1, row);
+      dst.setDataElements(r.x, y, r.width, 1, row);
+    }
+  }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * Display sized copy of the screen image. The image is scaled only when the display is resized
+ * or the image is updated, and only the damaged area of it. Integer scale without interpolation
+ * is done by copying pixels, the rest goes to Java2D. Indexed images are expanded with a palette
+ * lookup table, Java2D gets an rgb copy of them.
+ */
+class Presentation {
+
+  private final Rectangle dirty = new Rectangle(-1, -1);
+  private int sourceWidth;
+  private int sourceHeight;
+  private boolean interpolation;
+  private final Dimension aspectRatio = new Dimension();
+  private int width;
+  private int height;
+  private Rectangle view = new Rectangle();
+  private Rectangle[] letterbox = new Rectangle[0];
+  private BufferedImage buffer;
+  private int[] row = new int[0];
+  private IndexColorModel palette;
+  private final int[] lut = new int[0x100];
+  private byte[] indices = new byte[0];
+  private BufferedImage rgb; // indexed image converted for Java2D
+
+  /**
+   * @return the image area within the letterbox
+   */
+  public static Rectangle getView(int width, int height, Dimension aspectRatio) {
+    int w = height * aspectRatio.width / aspectRatio.height;
+    int h = width * aspectRatio.height / aspectRatio.width;
+    w = Math.min(width, w);
+    h = Math.min(height, h);
+    return new Rectangle((width - w) / 2, (height - h) / 2, w, h);
+  }
+
+  public void damage(Rectangle damage) {
+    synchronized (dirty) {
+      dirty.add(damage);
+    }
+  }
+
+  /**
+   * Takes the damage accumulated since the last call. Must be called before acquiring the frame to render,
+   * then the damage of a frame that arrives after is kept for the next render.
+   */
+  public Rectangle takeDamage() {
+    synchronized (dirty) {
+      Rectangle d = new Rectangle(dirty);
+      dirty.setBounds(0, 0, -1, -1);
+      return d;
+    }
+  }
+
+  private boolean isValid(BufferedImage image, int width, int height, Dimension aspectRatio, boolean interpolation) {
+    return buffer != null && image.getWidth() == sourceWidth && image.getHeight() == sourceHeight
+        && width == this.width && height == this.height && aspectRatio.equals(this.aspectRatio)
+        && interpolation == this.interpolation;
+  }
+
+  public void render(BufferedImage image, int width, int height, Dimension aspectRatio, boolean interpolation,
+      GraphicsConfiguration configuration) {
+    render(image, takeDamage(), width, height, aspectRatio, interpolation, configuration);
+  }
+
+  /**
+   * Scales the damaged area of the image into the buffer, everything if the display has changed.
+   */
+  public void render(BufferedImage image, Rectangle d, int width, int height, Dimension aspectRatio,
+      boolean interpolation, GraphicsConfiguration configuration) {
+    int iw = image.getWidth();
+    int ih = image.getHeight();
+    if (!isValid(image, width, height, aspectRatio, interpolation)) {
+      sourceWidth = iw;
+      sourceHeight = ih;
+      this.width = width;
+      this.height = height;
+      this.aspectRatio.setSize(aspectRatio);
+      this.interpolation = interpolation;
+      view = getView(width, height, aspectRatio);
+      int x = view.x + view.width;
+      int y = view.y + view.height;
+      letterbox = view.x > 0
+          ? new Rectangle[]{new Rectangle(0, 0, view.x, height), new Rectangle(x, 0, width - x, height)}
+          : view.y > 0
+          ? new Rectangle[]{new Rectangle(0, 0, width, view.y), new Rectangle(0, y, width, height - y)}
+          : new Rectangle[0];
+      buffer = null;
+      if (view.isEmpty()) return;
+      buffer = configuration == null ? new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB)
+          : configuration.createCompatibleImage(view.width, view.height);
+      d = new Rectangle(iw, ih);
+    }
+    if (buffer == null) return;
+    boolean indexed = image.getType() == BufferedImage.TYPE_BYTE_INDEXED;
+    if (indexed && image.getColorModel() != palette) {
+      palette = (IndexColorModel) image.getColorModel();
+      Arrays.fill(lut, 0);
+      palette.getRGBs(lut);
+      d = new Rectangle(iw, ih);
+    }
+    d = d.intersection(new Rectangle(iw, ih));
+    if (d.isEmpty()) return;
+    int sx = view.width / iw;
+    int sy = view.height / ih;
+    int bufferType = buffer.getType();
+    if (!interpolation && sx * iw == view.width && sy * ih == view.height
+        && (bufferType == BufferedImage.TYPE_INT_RGB || bufferType == BufferedImage.TYPE_INT_ARGB)) {
+      scaleInteger(image, d, sx, sy);
+    } else if (indexed) {
+      if (rgb == null || rgb.getWidth() != iw || rgb.getHeight() != ih) {
+        rgb = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
+        d = new Rectangle(iw, ih);
+      }
+      int[] data = ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData();
+      if (row.length < d.width) row = new int[d.width];
+      for (int y = d.y, yn = d.y + d.height; y < yn; y++) {
+        readRow(image, d.x, y, d.width);
+        System.arraycopy(row, 0, data, y * iw + d.x, d.width);
+      }
+      scale(rgb, d);
+    } else scale(image, d);
+  }
+
+  /**
+   * Reads rgb pixels of the image row into the row array.
+   */
+  private void readRow(BufferedImage image, int x, int y, int width) {
+    int[] row = this.row;
+    Raster raster = image.getRaster();
+    switch (image.getType()) {
+      case BufferedImage.TYPE_INT_RGB:
+        if (raster.getParent() != null) break;
+        int[] src = ((DataBufferInt) raster.getDataBuffer()).getData();
+        System.arraycopy(src, y * image.getWidth() + x, row, 0, width);
+        return;
+      case BufferedImage.TYPE_BYTE_INDEXED:
+        if (indices.length < width) indices = new byte[width];
+        byte[] indices = this.indices;
+        raster.getDataElements(x, y, width, 1, indices);
+        for (int i = 0; i < width; i++) row[i] = lut[indices[i] & 0xFF];
+        return;
+    }
+    image.getRGB(x, y, width, 1, row, 0, width);
+  }
+
+  private void scaleInteger(BufferedImage image, Rectangle d, int sx, int sy) {
+    int[] data = ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+    int bw = buffer.getWidth();
+    if (row.length < d.width) row = new int[d.width];
+    int[] row = this.row;
+    int rowWidth = d.width * sx;
+    for (int y = d.y, yn = d.y + d.height; y < yn; y++) {
+      int p0 = y * sy * bw + d.x * sx;
+      int p = p0;
+      readRow(image, d.x, y, d.width);
+      if (sx == 1) {
+        for (int x = 0; x < d.width; x++) data[p++] = row[x] | 0xFF000000;
+      } else for (int x = 0; x < d.width; x++, p += sx) Arrays.fill(data, p, p + sx, row[x] | 0xFF000000);
+      for (int i = 1; i < sy; i++) System.arraycopy(data, p0, data, p0 + i * bw, rowWidth);
+    }
+  }
+
+  private void scale(BufferedImage image, Rectangle d) {
+    int iw = image.getWidth();
+    int ih = image.getHeight();
+    if (interpolation) d.grow(1, 1); // bilinear filter reads the neighbours
+    int x0 = Math.floorDiv(d.x * view.width, iw);
+    int y0 = Math.floorDiv(d.y * view.height, ih);
+    int x1 = -Math.floorDiv(-(d.x + d.width) * view.width, iw);
+    int y1 = -Math.floorDiv(-(d.y + d.height) * view.height, ih);
+    Graphics2D graphics = buffer.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation
+        ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    graphics.clipRect(x0, y0, x1 - x0, y1 - y0);
+    graphics.drawImage(image, 0, 0, view.width, view.height, null);
+    graphics.dispose();
+  }
+
+  public void paint(Graphics graphics) {
+    if (buffer == null) return;
+    graphics.drawImage(buffer, view.x, view.y, null);
+    for (Rectangle r : letterbox) graphics.clearRect(r.x, r.y, r.width, r.height);
+  }
+
+  /**
+   * For testing, the last rendered frame.
+   */
+  BufferedImage getBuffer() {
+    return buffer;
+  }
+
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.awt.Rectangle;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Remote framebuffer server, RFB 3.8 without authentication. Every client gets only the 16x16 tiles
+ * that changed since its last update, in raw, RRE or hextile encoding. Key and pointer events
+ * of the clients are delivered to the screen listeners like local ones. Clients without the DesktopSize
+ * pseudo-encoding are disconnected when the screen is resized.
+ * Usage: screen.frameListener = new RfbServer(screen, 5900);
+ */
+public class RfbServer implements Consumer<BufferedImage>, AutoCloseable {
+
+  private static final int TILE = 16;
+  private static final int RAW = 0;
+  private static final int RRE = 2;
+  private static final int HEXTILE = 5;
+  private static final int DESKTOP_SIZE = -223;
+
+  private final Screen screen;
+  private final ServerSocket serverSocket;
+  private final List<Client> clients = new CopyOnWriteArrayList<>();
+  private int[] pixels;
+  private int width;
+  private int height;
+  private long version;
+
+  /**
+   * Listens on the loopback interface.
+   * @param port 0 for any free port
+   */
+  public RfbServer(Screen screen, int port) throws IOException {
+    this(screen, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  public RfbServer(Screen screen, InetSocketAddress address) throws IOException {
+    this.screen = screen;
+    serverSocket = new ServerSocket();
+    serverSocket.bind(address);
+    Thread thread = new Thread(this::listen, "rfb");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void listen() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        synchronized (this) {
+          snapshot(screen.image); // accept skips the frames while nobody is connected
+        }
+        Client client = new Client(socket);
+        clients.add(client);
+        Thread thread = new Thread(client::read, "rfb " + socket.getRemoteSocketAddress());
+        thread.setDaemon(true);
+        thread.start();
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private void snapshot(BufferedImage frame) {
+    int w = frame.getWidth();
+    int h = frame.getHeight();
+    if (pixels == null || w != width || h != height) {
+      pixels = new int[w * h];
+      width = w;
+      height = h;
+    }
+    frame.getRGB(0, 0, w, h, pixels, 0, w);
+    version++;
+    notifyAll();
+  }
+
+  /**
+   * App thread, takes a snapshot of the frame if there are clients.
+   */
+  @Override
+  public void accept(BufferedImage frame) {
+    if (clients.isEmpty()) return;
+    synchronized (this) {
+      snapshot(frame);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      serverSocket.close();
+    } catch (IOException ignore) {}
+    for (Client client : clients) client.close();
+  }
+
+  /**
+   * Pixel format of the client, true colour only.
+   */
+  private static final class PixelFormat {
+    int bytes = 4;
+    boolean bigEndian;
+    int redMax = 0xFF;
+    int greenMax = 0xFF;
+    int blueMax = 0xFF;
+    int redShift = 16;
+    int greenShift = 8;
+    int blueShift = 0;
+
+    int pixel(int rgb) {
+      return ((rgb >> 16 & 0xFF) * redMax + 0x7F) / 0xFF << redShift
+          | ((rgb >> 8 & 0xFF) * greenMax + 0x7F) / 0xFF << greenShift
+          | ((rgb & 0xFF) * blueMax + 0x7F) / 0xFF << blueShift;
+    }
+  }
+
+  private final class Client {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private PixelFormat pixelFormat = new PixelFormat();
+    private int encoding = RAW;
+    private boolean desktopSize;
+    private final Rectangle request = new Rectangle(-1, -1);
+    private boolean incremental = true;
+    private int buttons;
+    private int modifiers;
+    private int mouseX;
+    private int mouseY;
+    // writer
+    private long version;
+    private int[] current = new int[0];
+    private int[] sent = new int[0];
+    private int width;
+    private int height;
+    private int[] tiles = new int[0];
+    private final int[] tile = new int[TILE * TILE];
+    private final int[] colors = new int[TILE * TILE];
+
+    Client(Socket socket) throws IOException {
+      this.socket = socket;
+      socket.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 0x10000));
+    }
+
+    void close() {
+      clients.remove(this);
+      try {
+        socket.close();
+      } catch (IOException ignore) {}
+      synchronized (RfbServer.this) {
+        RfbServer.this.notifyAll();
+      }
+    }
+
+    private void handshake() throws IOException {
+      out.write("RFB 003.008\n".getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      byte[] version = new byte[12];
+      in.readFully(version);
+      if (new String(version, StandardCharsets.US_ASCII).compareTo("RFB 003.007\n") < 0) {
+        out.writeInt(1); // security type none
+      } else {
+        out.write(new byte[]{1, 1}); // one security type, none
+        out.flush();
+        in.readUnsignedByte();
+        if (version[10] == '8') out.writeInt(0); // security result ok
+      }
+      out.flush();
+      in.readUnsignedByte(); // client init, shared flag
+      synchronized (RfbServer.this) {
+        width = RfbServer.this.width;
+        height = RfbServer.this.height;
+      }
+      out.writeShort(width);
+      out.writeShort(height);
+      out.write(new byte[]{32, 24, 0, 1, 0, (byte) 0xFF, 0, (byte) 0xFF, 0, (byte) 0xFF, 16, 8, 0, 0, 0, 0});
+      byte[] name = "jnc".getBytes(StandardCharsets.UTF_8);
+      out.writeInt(name.length);
+      out.write(name);
+      out.flush();
+    }
+
+    /**
+     * Reader thread, starts the writer after the handshake.
+     */
+    void read() {
+      try {
+        handshake();
+        Thread thread = new Thread(this::write, Thread.currentThread().getName() + " writer");
+        thread.setDaemon(true);
+        thread.start();
+        while (true) {
+          int type = in.readUnsignedByte();
+          switch (type) {
+            case 0: setPixelFormat(); break;
+            case 2: setEncodings(); break;
+            case 3: framebufferUpdateRequest(); break;
+            case 4: keyEvent(); break;
+            case 5: pointerEvent(in.readUnsignedByte(), in.readUnsignedShort(), in.readUnsignedShort()); break;
+            case 6: skip(3); skip(in.readInt()); break; // cut text
+            default: throw new IOException("message type " + type);
+          }
+        }
+      } catch (IOException ignore) {
+      } finally {
+        close();
+      }
+    }
+
+    private void skip(int n) throws IOException {
+      for (int i = 0; i < n; i++) in.readUnsignedByte();
+    }
+
+    private void setPixelFormat() throws IOException {
+      skip(3);
+      PixelFormat pf = new PixelFormat();
+      int bpp = in.readUnsignedByte();
+      in.readUnsignedByte(); // depth
+      pf.bigEndian = in.readUnsignedByte() != 0;
+      if (in.readUnsignedByte() == 0) throw new IOException("colour map is not supported");
+      if (bpp != 8 && bpp != 16 && bpp != 32) throw new IOException("bits per pixel " + bpp);
+      pf.bytes = bpp / 8;
+      pf.redMax = in.readUnsignedShort();
+      pf.greenMax = in.readUnsignedShort();
+      pf.blueMax = in.readUnsignedShort();
+      pf.redShift = in.readUnsignedByte();
+      pf.greenShift = in.readUnsignedByte();
+      pf.blueShift = in.readUnsignedByte();
+      skip(3);
+      synchronized (RfbServer.this) {
+        pixelFormat = pf;
+        incremental = false; // everything in the new format
+      }
+    }
+
+    private void setEncodings() throws IOException {
+      skip(1);
+      int encoding = -1;
+      boolean desktopSize = false;
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        int e = in.readInt();
+        if (encoding < 0 && (e == RAW || e == RRE || e == HEXTILE)) encoding = e; // in order of preference
+        if (e == DESKTOP_SIZE) desktopSize = true;
+      }
+      synchronized (RfbServer.this) {
+        this.encoding = Math.max(encoding, RAW);
+        this.desktopSize = desktopSize;
+      }
+    }
+
+    private void framebufferUpdateRequest() throws IOException {
+      boolean incremental = in.readUnsignedByte() != 0;
+      Rectangle r = new Rectangle(in.readUnsignedShort(), in.readUnsignedShort(),
+          in.readUnsignedShort(), in.readUnsignedShort());
+      synchronized (RfbServer.this) {
+        request.add(r);
+        this.incremental &= incremental;
+        RfbServer.this.notifyAll();
+      }
+    }
+
+    private void keyEvent() throws IOException {
+      boolean down = in.readUnsignedByte() != 0;
+      skip(2);
+      int keysym = in.readInt();
+      int m = keysym == 0xFFE3 || keysym == 0xFFE4 ? EventRing.CTRL
+          : keysym == 0xFFE9 || keysym == 0xFFEA ? EventRing.ALT
+          : keysym == 0xFFE1 || keysym == 0xFFE2 ? EventRing.SHIFT : 0;
+      if (m != 0) modifiers = down ? modifiers | m : modifiers & ~m;
+      int keyCode = keyCode(keysym);
+      if (screen.gameController && keyCode != KeyEvent.VK_UNDEFINED) {
+        screen.dispatch(EventRing.key(down ? EventRing.KEY_DOWN : EventRing.KEY_UP, keyCode, 0));
+      }
+      if (!down || m != 0) return;
+      char c = keyChar(keysym);
+      if (c != KeyEvent.CHAR_UNDEFINED) {
+        char plu = 0;
+        if ((modifiers & EventRing.CTRL) != 0 && c >= 0x40 && c < 0x80) {
+          plu = c;
+          c &= 0x1F;
+        }
+        screen.dispatch(EventRing.keyTyped(c, plu, modifiers));
+      } else if (keyCode != KeyEvent.VK_UNDEFINED) {
+        screen.dispatch(EventRing.key(EventRing.KEY_PRESSED, keyCode, modifiers));
+      }
+    }
+
+    private void pointerEvent(int buttons, int x, int y) {
+      if (x != mouseX || y != mouseY) {
+        screen.dispatch(EventRing.mouseMoved(x - mouseX, y - mouseY, x, y));
+        mouseX = x;
+        mouseY = y;
+      }
+      int pressed = buttons & ~this.buttons;
+      int released = ~buttons & this.buttons;
+      this.buttons = buttons;
+      for (int b = 0; b < 3; b++) {
+        int button = b == 1 ? 2 : b == 2 ? 3 : 1; // left, middle, right
+        if ((pressed & 1 << b) != 0) screen.dispatch(EventRing.mouseButton(EventRing.MOUSE_PRESSED, button));
+        if ((released & 1 << b) != 0) screen.dispatch(EventRing.mouseButton(EventRing.MOUSE_RELEASED, button));
+      }
+      if ((pressed & 8) != 0) screen.dispatch(EventRing.mouseWheel(-1));
+      if ((pressed & 16) != 0) screen.dispatch(EventRing.mouseWheel(1));
+    }
+
+    /**
+     * Writer thread, sends the changed tiles when the client asks for an update.
+     */
+    private void write() {
+      try {
+        while (true) {
+          Rectangle r;
+          boolean full;
+          PixelFormat pf;
+          int encoding;
+          boolean resize = false;
+          synchronized (RfbServer.this) {
+            while (!socket.isClosed() && (request.isEmpty() || incremental && RfbServer.this.version == version)) {
+              RfbServer.this.wait();
+            }
+            if (socket.isClosed()) return;
+            if (RfbServer.this.width != width || RfbServer.this.height != height) {
+              if (!desktopSize) return; // the client cannot follow the resize, disconnect
+              width = RfbServer.this.width;
+              height = RfbServer.this.height;
+              resize = true;
+            }
+            if (current.length != pixels.length) {
+              current = new int[pixels.length];
+              sent = new int[pixels.length];
+              incremental = false;
+            }
+            System.arraycopy(pixels, 0, current, 0, pixels.length);
+            version = RfbServer.this.version;
+            r = request.intersection(new Rectangle(width, height));
+            if (!incremental || resize) r = new Rectangle(width, height);
+            full = !incremental || resize; // the client reset its framebuffer
+            request.setBounds(0, 0, -1, -1);
+            incremental = true;
+            pf = pixelFormat;
+            encoding = this.encoding;
+          }
+          update(findTiles(r, full), resize, pf, encoding);
+        }
+      } catch (IOException | InterruptedException ignore) {
+      } finally {
+        close();
+      }
+    }
+
+    /**
+     * @return number of tiles to send, their indices are in the tiles array
+     */
+    private int findTiles(Rectangle r, boolean full) {
+      int tw = (width + TILE - 1) / TILE;
+      int th = (height + TILE - 1) / TILE;
+      if (tiles.length < tw * th) tiles = new int[tw * th];
+      int n = 0;
+      if (r.isEmpty()) return 0;
+      for (int ty = r.y / TILE, tyn = (r.y + r.height - 1) / TILE; ty <= tyn; ty++) {
+        for (int tx = r.x / TILE, txn = (r.x + r.width - 1) / TILE; tx <= txn; tx++) {
+          boolean changed = full;
+          int x0 = tx * TILE;
+          int x1 = Math.min(x0 + TILE, width);
+          for (int y = ty * TILE, yn = Math.min(y + TILE, height); !changed && y < yn; y++) {
+            int p = y * width;
+            changed = !Arrays.equals(current, p + x0, p + x1, sent, p + x0, p + x1);
+          }
+          if (changed) tiles[n++] = ty * tw + tx;
+        }
+      }
+      return n;
+    }
+
+    private void update(int n, boolean resize, PixelFormat pf, int encoding) throws IOException {
+      int tw = (width + TILE - 1) / TILE;
+      out.writeByte(0);
+      out.writeByte(0);
+      out.writeShort(n + (resize ? 1 : 0));
+      if (resize) {
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeInt(DESKTOP_SIZE);
+      }
+      for (int i = 0; i < n; i++) {
+        int x = tiles[i] % tw * TILE;
+        int y = tiles[i] / tw * TILE;
+        int w = Math.min(TILE, width - x);
+        int h = Math.min(TILE, height - y);
+        for (int ty = 0, p = y * width + x; ty < h; ty++, p += width) {
+          System.arraycopy(current, p, tile, ty * w, w);
+          System.arraycopy(current, p, sent, p, w);
+        }
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeShort(w);
+        out.writeShort(h);
+        switch (encoding) {
+          case HEXTILE: hextile(w, h, pf); break;
+          case RRE: rre(w, h, pf); break;
+          default: raw(w * h, pf);
+        }
+      }
+      out.flush();
+    }
+
+    private void writePixel(int rgb, PixelFormat pf) throws IOException {
+      int p = pf.pixel(rgb);
+      if (pf.bigEndian) for (int i = pf.bytes - 1; i >= 0; i--) out.writeByte(p >> i * 8);
+      else for (int i = 0; i < pf.bytes; i++) out.writeByte(p >> i * 8);
+    }
+
+    private void raw(int size, PixelFormat pf) throws IOException {
+      out.writeInt(RAW);
+      for (int i = 0; i < size; i++) writePixel(tile[i], pf);
+    }
+
+    /**
+     * @return the most frequent colour of the tile, Boyer-Moore majority vote
+     */
+    private int background(int size) {
+      int bg = tile[0];
+      for (int i = 1, count = 1; i < size; i++) {
+        if (count == 0) bg = tile[i];
+        count += tile[i] == bg ? 1 : -1;
+      }
+      return bg;
+    }
+
+    /**
+     * Horizontal runs of the same colour other than background, x y w in colors, the colour in tile.
+     * @return number of runs
+     */
+    private int runs(int w, int h, int bg) {
+      int n = 0;
+      for (int y = 0, p = 0; y < h; y++) {
+        for (int x = 0; x < w; ) {
+          int c = tile[p];
+          int x0 = x;
+          do {
+            x++;
+            p++;
+          } while (x < w && tile[p] == c);
+          if (c != bg) colors[n++] = x0 | y << 8 | (x - x0) << 16;
+        }
+      }
+      return n;
+    }
+
+    private void rre(int w, int h, PixelFormat pf) throws IOException {
+      int bg = background(w * h);
+      int n = runs(w, h, bg);
+      if (n * (pf.bytes + 8) >= w * h * pf.bytes) {
+        raw(w * h, pf);
+        return;
+      }
+      out.writeInt(RRE);
+      out.writeInt(n);
+      writePixel(bg, pf);
+      for (int i = 0; i < n; i++) {
+        int run = colors[i];
+        int x = run & 0xFF;
+        int y = run >> 8 & 0xFF;
+        writePixel(tile[y * w + x], pf);
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeShort(run >> 16);
+        out.writeShort(1);
+      }
+    }
+
+    private void hextile(int w, int h, PixelFormat pf) throws IOException {
+      out.writeInt(HEXTILE);
+      int size = w * h;
+      int bg = background(size);
+      int fg = bg;
+      boolean twoColors = true;
+      for (int i = 0; i < size && twoColors; i++) {
+        int c = tile[i];
+        if (c == bg) continue;
+        if (fg == bg) fg = c;
+        twoColors = c == fg;
+      }
+      if (fg == bg) {
+        out.writeByte(2); // background specified
+        writePixel(bg, pf);
+        return;
+      }
+      int n = twoColors ? runs(w, h, bg) : 0;
+      if (!twoColors || n > 0xFF || 2 * pf.bytes + 1 + n * 2 >= size * pf.bytes) {
+        out.writeByte(1); // raw
+        for (int i = 0; i < size; i++) writePixel(tile[i], pf);
+        return;
+      }
+      out.writeByte(2 | 4 | 8); // background, foreground, any subrects
+      writePixel(bg, pf);
+      writePixel(fg, pf);
+      out.writeByte(n);
+      for (int i = 0; i < n; i++) {
+        int run = colors[i];
+        out.writeByte((run & 0xFF) << 4 | run >> 8 & 0xFF);
+        out.writeByte((run >> 16) - 1 << 4);
+      }
+    }
+  }
+
+  private static char keyChar(int keysym) {
+    if (keysym >= 0x20 && keysym < 0x7F || keysym >= 0xA0 && keysym <= 0xFF) return (char) keysym;
+    if ((keysym & 0xFF000000) == 0x01000000) return (char) keysym; // unicode
+    switch (keysym) {
+      case 0xFF08: return '\b';
+      case 0xFF09: return '\t';
+      case 0xFF0D: return '\n';
+      case 0xFF1B: return 0x1B;
+      case 0xFFFF: return 0x7F;
+      default: return KeyEvent.CHAR_UNDEFINED;
+    }
+  }
+
+  private static int keyCode(int keysym) {
+    if (keysym >= 'a' && keysym <= 'z') return keysym - 0x20;
+    if (keysym >= 'A' && keysym <= 'Z' || keysym >= '0' && keysym <= '9' || keysym == ' ') return keysym;
+    if (keysym >= 0xFFBE && keysym <= 0xFFC9) return KeyEvent.VK_F1 + keysym - 0xFFBE;
+    switch (keysym) {
+      case 0xFF08: return KeyEvent.VK_BACK_SPACE;
+      case 0xFF09: return KeyEvent.VK_TAB;
+      case 0xFF0D: return KeyEvent.VK_ENTER;
+      case 0xFF1B: return KeyEvent.VK_ESCAPE;
+      case 0xFF50: return KeyEvent.VK_HOME;
+      case 0xFF51: return KeyEvent.VK_LEFT;
+      case 0xFF52: return KeyEvent.VK_UP;
+      case 0xFF53: return KeyEvent.VK_RIGHT;
+      case 0xFF54: return KeyEvent.VK_DOWN;
+      case 0xFF55: return KeyEvent.VK_PAGE_UP;
+      case 0xFF56: return KeyEvent.VK_PAGE_DOWN;
+      case 0xFF57: return KeyEvent.VK_END;
+      case 0xFF63: return KeyEvent.VK_INSERT;
+      case 0xFFE1: case 0xFFE2: return KeyEvent.VK_SHIFT;
+      case 0xFFE3: case 0xFFE4: return KeyEvent.VK_CONTROL;
+      case 0xFFE9: case 0xFFEA: return KeyEvent.VK_ALT;
+      case 0xFFFF: return KeyEvent.VK_DELETE;
+      default: return KeyEvent.VK_UNDEFINED;
+    }
+  }
+
+}
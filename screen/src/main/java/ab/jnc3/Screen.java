@@ -25,11 +25,9 @@ import java.awt.Dimension;
 import java.awt.DisplayMode;
 import java.awt.Frame;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.GraphicsDevice;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.RenderingHints;
 import java.awt.Robot;
 import java.awt.Window;
 import java.awt.event.KeyEvent;
@@ -42,26 +40,33 @@ import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
-import java.util.Set;
+import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 
 public class Screen implements AutoCloseable {
 
-  public Consumer<String> keyListener;
+  public Consumer<String> keyListener; // optional, events in text notation
+  public Consumer<BufferedImage> frameListener; // optional, every updated frame in the app thread, see FrameCapture
+  public final EventRing events = new EventRing(0x400); // events packed in long, for polling without allocation
   public final Component eventSupplier; // provides addKeyListener with keyReleased event, addMouseListener, etc
   public BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
   public Dimension preferredSize = new Dimension(640, 480); // display aspect ratio
   public boolean interpolation;
   public boolean gameController; // press and release key events
+  public final ScreenMetrics metrics = new ScreenMetrics();
 
   private final Canvas canvas;
   private final Frame frame;
   private final WindowListener windowListener;
   private final Cursor cursor;
+  private final Consumer<BufferedImage> frameSink;
+  private volatile PageFlip pageFlip;
   private boolean fullScreen = true;
 
   public Screen() {
+    frameSink = null;
     canvas = new Canvas();
     windowListener = new WindowListener(this::onEvent, () -> this.gameController);
     frame = new Frame() {
@@ -85,6 +90,23 @@ public class Screen implements AutoCloseable {
     eventSupplier = frame; // TODO: 2024-07-13 replace with a proxy Component
   }
 
+  /**
+   * Headless screen without a window, every update sends the image to the frame sink
+   * in the calling thread. Works without a display and is not limited by the repaint rate.
+   */
+  public Screen(Consumer<BufferedImage> frameSink) {
+    this.frameSink = Objects.requireNonNull(frameSink);
+    canvas = new Canvas();
+    windowListener = null;
+    frame = null;
+    cursor = null;
+    eventSupplier = canvas; // never fires
+  }
+
+  public boolean isHeadless() {
+    return frame == null;
+  }
+
   private void setFullScreenWindow(Window window) {
     if ("Linux".equals(System.getProperty("os.name"))
         && frame.getGraphicsConfiguration().getDevice().isFullScreenSupported())
@@ -92,6 +114,7 @@ public class Screen implements AutoCloseable {
   }
 
   private void resetFrame() {
+    if (frame == null) return;
     frame.dispose();
     frame.setUndecorated(fullScreen);
     frame.setExtendedState(fullScreen ? Frame.MAXIMIZED_BOTH : Frame.NORMAL);
@@ -112,102 +135,184 @@ public class Screen implements AutoCloseable {
   }
 
   public void update() {
-    canvas.repaint();
+    pageFlip = null;
+    metrics.onUpdate();
+    notifyFrameListener(image);
+    if (frameSink != null) sink(image); else canvas.repaint();
+  }
+
+  /**
+   * Partial update, only the damaged part of the image is scaled and repainted.
+   * Damaged areas of consecutive updates are merged until the next paint.
+   * @param damage area of the image in pixels
+   */
+  public void update(Rectangle damage) {
+    pageFlip = null;
+    metrics.onUpdate();
+    notifyFrameListener(image);
+    if (frameSink != null) sink(image); else canvas.repaint(damage);
+  }
+
+  /**
+   * Page flipping, an alternative to update. The image becomes the front buffer and is replaced
+   * with a back buffer that already has the same picture. The app keeps drawing into the image
+   * and never overwrites the frame being painted. Calling update switches page flipping off.
+   */
+  public void present() {
+    present(null);
+  }
+
+  /**
+   * Page flipping with the damaged area, see {@link #present()} and {@link #update(Rectangle)}.
+   * @param damage area of the image changed since the last present, null if everything
+   */
+  public void present(Rectangle damage) {
+    BufferedImage image = this.image;
+    PageFlip pageFlip = this.pageFlip;
+    if (pageFlip == null || pageFlip.getBack() != image) {
+      pageFlip = new PageFlip(image);
+      damage = null;
+    }
+    this.image = pageFlip.present(damage);
+    this.pageFlip = pageFlip;
+    metrics.onUpdate();
+    notifyFrameListener(image);
+    if (frameSink != null) sink(image);
+    else if (damage == null) canvas.repaint(); else canvas.repaint(damage);
+  }
+
+  private void notifyFrameListener(BufferedImage frame) {
+    Consumer<BufferedImage> frameListener = this.frameListener;
+    if (frameListener != null) frameListener.accept(frame);
+  }
+
+  private void sink(BufferedImage frame) {
+    long start = metrics.onPaintStart();
+    frameSink.accept(frame);
+    metrics.onPaintEnd(start);
+  }
+
+  /**
+   * @return the image to paint, the front buffer if page flipping
+   */
+  private BufferedImage getFrame() {
+    PageFlip pageFlip = this.pageFlip;
+    return pageFlip == null ? image : pageFlip.getFront();
   }
 
   /**
    * The pointer is disabled by default, this method enables it back.
    */
   public void enablePointer() {
-    frame.setCursor(cursor);
+    if (frame != null) frame.setCursor(cursor);
   }
 
-  private void onEvent(String event) {
-    switch (event) {
-      case "F11": case "Alt+Enter": setFullScreen(!fullScreen); return;
-      case "Maximize": setFullScreen(true); return;
-      case "Restore": setFullScreen(false); return;
-      case "Close": close(); // then notify keylistener
+  private void onEvent(long event) {
+    int type = EventRing.getType(event);
+    int code = EventRing.getCode(event);
+    if (type == EventRing.WINDOW) switch (code) {
+      case EventRing.MAXIMIZE: setFullScreen(true); return;
+      case EventRing.RESTORE: setFullScreen(false); return;
+      case EventRing.CLOSE: close(); // then notify listeners
     }
+    if (type == EventRing.KEY_PRESSED && code == KeyEvent.VK_F11 && EventRing.getModifiers(event) == 0
+        || type == EventRing.KEY_TYPED && EventRing.getKeyChar(event) == '\n'
+        && EventRing.getModifiers(event) == EventRing.ALT) {
+      setFullScreen(!fullScreen);
+      return;
+    }
+    dispatch(event);
+  }
+
+  /**
+   * Delivers the event to the listeners, remote input goes straight here.
+   */
+  void dispatch(long event) {
+    if (EventRing.getType(event) != EventRing.WINDOW) metrics.onInput();
+    events.offer(event);
     Consumer<String> keyListener = this.keyListener;
-    if (keyListener != null) keyListener.accept(event);
+    if (keyListener != null) keyListener.accept(EventRing.toString(event));
   }
 
   @Override
   public void close() {
+    metrics.unregister();
+    if (frame == null) return;
     frame.removeWindowStateListener(windowListener);
     frame.dispose();
   }
 
   private class Canvas extends Component {
 
+    private final Presentation presentation = new Presentation();
+
     public Canvas() {
       setFocusable(false);
       setBackground(Color.BLACK);
     }
 
+    @Override
+    public void repaint() {
+      BufferedImage image = Screen.this.image;
+      presentation.damage(new Rectangle(image.getWidth(), image.getHeight()));
+      super.repaint();
+    }
+
+    /**
+     * Maps the damaged image pixels to the component, rounding outwards.
+     */
+    public void repaint(Rectangle damage) {
+      BufferedImage image = Screen.this.image;
+      int iw = image.getWidth();
+      int ih = image.getHeight();
+      Rectangle d = damage.intersection(new Rectangle(iw, ih));
+      if (d.isEmpty()) return;
+      presentation.damage(d);
+      if (interpolation) d.grow(1, 1); // bilinear filter reads the neighbours
+      Rectangle view = Presentation.getView(getWidth(), getHeight(), preferredSize);
+      int x0 = view.x + Math.floorDiv(d.x * view.width, iw);
+      int y0 = view.y + Math.floorDiv(d.y * view.height, ih);
+      int x1 = view.x + -Math.floorDiv(-(d.x + d.width) * view.width, iw);
+      int y1 = view.y + -Math.floorDiv(-(d.y + d.height) * view.height, ih);
+      repaint(x0, y0, x1 - x0, y1 - y0);
+    }
+
     @Override
     public void paint(Graphics graphics) {
-      Dimension aspectRatio = preferredSize;
-      if (interpolation && graphics instanceof Graphics2D) ((Graphics2D) graphics).setRenderingHint(
-          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-      Rectangle clipBounds = graphics.getClipBounds();
-      int width = clipBounds.width;
-      int height = clipBounds.height;
-      int w = height * aspectRatio.width / aspectRatio.height;
-      int h = width * aspectRatio.height / aspectRatio.width;
-      w = Math.min(width, w);
-      h = Math.min(height, h);
-      int x = (width - w) / 2;
-      int y = (height - h) / 2;
-      graphics.drawImage(image, x, y, w, h, this);
-      if (x > 0) {
-        graphics.clearRect(0, 0, x, h);
-        x += w;
-        graphics.clearRect(x, 0, width - x, h);
-      }
-      if (y > 0) {
-        graphics.clearRect(0, 0, w, y);
-        y += h;
-        graphics.clearRect(0, y, w, height - y);
-      }
+      long start = metrics.onPaintStart();
+      Rectangle damage = presentation.takeDamage();
+      presentation.render(getFrame(), damage, getWidth(), getHeight(), preferredSize, interpolation,
+          getGraphicsConfiguration());
+      presentation.paint(graphics); // clipped to the damaged area
+      metrics.onPaintEnd(start);
     }
   }
 
   /**
-   * Listens to the events of window and keyboard. Creates a sensible text describing the event
-   * and sends it to the consumer. Marked final to show that it designed properly and should not be refactored.
+   * Listens to the events of window and keyboard. Packs the event in long and sends it to the consumer,
+   * see EventRing for the layout. Marked final to show that it designed properly and should not be refactored.
    */
   private static final class WindowListener extends WindowAdapter implements KeyListener,
       MouseListener, MouseMotionListener, MouseWheelListener {
-    private final Consumer<String> eventListener;
+    private final LongConsumer eventListener;
     private final Supplier<Boolean> gameController;
 
-    public WindowListener(Consumer<String> eventListener, Supplier<Boolean> gameController) {
+    public WindowListener(LongConsumer eventListener, Supplier<Boolean> gameController) {
       this.eventListener = eventListener;
       this.gameController = gameController;
     }
 
     @Override
     public void windowClosing(WindowEvent e) {
-      eventListener.accept("Close");
+      eventListener.accept(EventRing.window(EventRing.CLOSE));
     }
 
     @Override
     public void windowStateChanged(WindowEvent e) {
-      if (e.getOldState() == Frame.NORMAL && e.getNewState() == Frame.MAXIMIZED_BOTH) eventListener.accept("Maximize");
-      if (e.getOldState() == Frame.MAXIMIZED_BOTH && e.getNewState() == Frame.NORMAL) eventListener.accept("Restore");
-    }
-
-    private static String fromKeyChar(char c) {
-      switch (c) {
-        case KeyEvent.VK_ENTER: return "Enter";
-        case KeyEvent.VK_ESCAPE: return "Esc";
-        case KeyEvent.VK_TAB: return "Tab";
-        case KeyEvent.VK_BACK_SPACE: return "Backspace";
-        case KeyEvent.VK_DELETE: return "Delete";
-        default: return String.format("typed \\u%04X", (int) c);
-      }
+      if (e.getOldState() == Frame.NORMAL && e.getNewState() == Frame.MAXIMIZED_BOTH)
+        eventListener.accept(EventRing.window(EventRing.MAXIMIZE));
+      if (e.getOldState() == Frame.MAXIMIZED_BOTH && e.getNewState() == Frame.NORMAL)
+        eventListener.accept(EventRing.window(EventRing.RESTORE));
     }
 
     /**
@@ -225,74 +330,30 @@ public class Screen implements AutoCloseable {
       return (char) Integer.parseInt(es.substring(l, r));
     }
 
+    private static int modifiers(KeyEvent e) {
+      return (e.isControlDown() ? EventRing.CTRL : 0) | (e.isAltDown() ? EventRing.ALT : 0)
+          | (e.isShiftDown() ? EventRing.SHIFT : 0);
+    }
+
     @Override
     public void keyTyped(KeyEvent e) {
-      char plu = primaryLevelUnicode(e);
       char c = e.getKeyChar();
-      String key;
-      if (c < 0x20 || c == 0x7F) {
-        key = plu == 0 || plu == c ? fromKeyChar(c) : new String(new char[]{plu});
-        if (e.isShiftDown()) key = key.length() < 2 ? key.toUpperCase() : "Shift+" + key;
-      } else key = new String(new char[]{c});
-      StringBuilder keyNotation = new StringBuilder();
-      if (e.isControlDown()) keyNotation.append("Ctrl+");
-      if (e.isAltDown()) keyNotation.append("Alt+");
-      eventListener.accept(keyNotation.append(key).toString());
-    }
-
-    private static String fromKeyCode(int keyCode) {
-      switch (keyCode) {
-        case KeyEvent.VK_CONTROL: return "Control";
-        case KeyEvent.VK_ALT: return "Alt";
-        case KeyEvent.VK_SHIFT: return "Shift";
-        case KeyEvent.VK_F1: return "F1";
-        case KeyEvent.VK_F2: return "F2";
-        case KeyEvent.VK_F3: return "F3";
-        case KeyEvent.VK_F4: return "F4";
-        case KeyEvent.VK_F5: return "F5";
-        case KeyEvent.VK_F6: return "F6";
-        case KeyEvent.VK_F7: return "F7";
-        case KeyEvent.VK_F8: return "F8";
-        case KeyEvent.VK_F9: return "F9";
-        case KeyEvent.VK_F10: return "F10";
-        case KeyEvent.VK_F11: return "F11";
-        case KeyEvent.VK_F12: return "F12";
-        case KeyEvent.VK_LEFT: return "Left";
-        case KeyEvent.VK_DOWN: return "Down";
-        case KeyEvent.VK_UP: return "Up";
-        case KeyEvent.VK_RIGHT: return "Right";
-        case KeyEvent.VK_HOME: return "Home";
-        case KeyEvent.VK_PAGE_UP: return "PageUp";
-        case KeyEvent.VK_PAGE_DOWN: return "PageDown";
-        case KeyEvent.VK_END: return "End";
-        case KeyEvent.VK_INSERT: return "Insert";
-        case KeyEvent.VK_ENTER: return "Enter";
-        case KeyEvent.VK_ESCAPE: return "Esc";
-        case KeyEvent.VK_TAB: return "Tab";
-        case KeyEvent.VK_BACK_SPACE: return "Backspace";
-        case KeyEvent.VK_DELETE: return "Delete";
-        case KeyEvent.VK_SPACE: return "Spacebar";
-        default: return Character.toString(keyCode);
-      }
+      char plu = c < 0x20 || c == 0x7F ? primaryLevelUnicode(e) : 0; // only control characters need it
+      eventListener.accept(EventRing.keyTyped(c, plu, modifiers(e)));
     }
 
-    public static final Set<Integer> MODIFIER_KEY = Set.of(KeyEvent.VK_CONTROL, KeyEvent.VK_ALT, KeyEvent.VK_SHIFT);
     @Override
     public void keyPressed(KeyEvent e) {
       int keyCode = e.getKeyCode();
-      if (gameController.get()) eventListener.accept("+" + fromKeyCode(keyCode));
-      if (MODIFIER_KEY.contains(keyCode) || e.getKeyChar() != KeyEvent.CHAR_UNDEFINED) return; // handled by keyTyped
-      String key = fromKeyCode(keyCode);
-      StringBuilder keyNotation = new StringBuilder();
-      if (e.isControlDown()) keyNotation.append("Ctrl+");
-      if (e.isAltDown()) keyNotation.append("Alt+");
-      if (e.isShiftDown()) keyNotation.append("Shift+");
-      eventListener.accept(keyNotation.append(key).toString());
+      if (gameController.get()) eventListener.accept(EventRing.key(EventRing.KEY_DOWN, keyCode, 0));
+      if (keyCode == KeyEvent.VK_CONTROL || keyCode == KeyEvent.VK_ALT || keyCode == KeyEvent.VK_SHIFT
+          || e.getKeyChar() != KeyEvent.CHAR_UNDEFINED) return; // handled by keyTyped
+      eventListener.accept(EventRing.key(EventRing.KEY_PRESSED, keyCode, modifiers(e)));
     }
 
     @Override
     public void keyReleased(KeyEvent e) {
-      if (gameController.get()) eventListener.accept("-" + fromKeyCode(e.getKeyCode()));
+      if (gameController.get()) eventListener.accept(EventRing.key(EventRing.KEY_UP, e.getKeyCode(), 0));
     }
 
     private Robot robot;
@@ -310,13 +371,13 @@ public class Screen implements AutoCloseable {
     @Override
     public void mousePressed(MouseEvent e) {
       m(e);
-      eventListener.accept("Mouse+B" + e.getButton());
+      eventListener.accept(EventRing.mouseButton(EventRing.MOUSE_PRESSED, e.getButton()));
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
       m(e);
-      eventListener.accept("Mouse-B" + e.getButton());
+      eventListener.accept(EventRing.mouseButton(EventRing.MOUSE_RELEASED, e.getButton()));
     }
 
     @Override
@@ -355,14 +416,13 @@ public class Screen implements AutoCloseable {
           robot.mouseMove(mouseX, mouseY);
         }
       }
-      eventListener.accept("Mouse" + (x >= 0 ? "+" : "") + x + "," + (y >= 0 ? "+" : "") + y + "," + wx + "," + wy);
+      eventListener.accept(EventRing.mouseMoved(x, y, wx, wy));
     }
 
     @Override
     public void mouseWheelMoved(MouseWheelEvent e) {
       m(e);
-      int w = e.getWheelRotation();
-      eventListener.accept("Mouse" + (w >= 0 ? "+" : "-") + "W" + Math.abs(w));
+      eventListener.accept(EventRing.mouseWheel(e.getWheelRotation()));
     }
   }
 
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frame timing of a screen. Updates that arrive before the paint are coalesced into one presented frame,
+ * the update latency is measured from the first of them. The input latency is measured from the first
+ * input event to the end of the next paint.
+ */
+public class ScreenMetrics implements ScreenMetricsMBean {
+
+  public final Histogram updateLatency = new Histogram();
+  public final Histogram paintDuration = new Histogram();
+  public final Histogram cellsRedrawn = new Histogram();
+  public final Histogram inputLatency = new Histogram();
+  private final AtomicLong framesRequested = new AtomicLong();
+  private final AtomicLong framesPresented = new AtomicLong();
+  private final AtomicLong pendingUpdate = new AtomicLong();
+  private final AtomicLong pendingInput = new AtomicLong();
+  private ObjectName objectName;
+
+  private static void mark(AtomicLong pending) {
+    if (pending.get() == 0) pending.compareAndSet(0, System.nanoTime() | 1); // never 0
+  }
+
+  public void onUpdate() {
+    framesRequested.incrementAndGet();
+    mark(pendingUpdate);
+  }
+
+  public void onInput() {
+    mark(pendingInput);
+  }
+
+  /**
+   * @return the paint start time for onPaintEnd
+   */
+  public long onPaintStart() {
+    long time = System.nanoTime();
+    long update = pendingUpdate.getAndSet(0);
+    if (update != 0) {
+      framesPresented.incrementAndGet();
+      updateLatency.record(time - update);
+    }
+    return time;
+  }
+
+  public void onPaintEnd(long start) {
+    long time = System.nanoTime();
+    paintDuration.record(time - start);
+    long input = pendingInput.getAndSet(0);
+    if (input != 0) inputLatency.record(time - input);
+  }
+
+  /**
+   * Registers the platform MBean ab.jnc3:type=Screen,name=name
+   */
+  public synchronized ScreenMetrics register(String name) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (objectName != null) server.unregisterMBean(objectName);
+      objectName = new ObjectName("ab.jnc3:type=Screen,name=" + ObjectName.quote(name));
+      server.registerMBean(this, objectName);
+    } catch (JMException e) {
+      objectName = null;
+      throw new IllegalStateException(e);
+    }
+    return this;
+  }
+
+  public synchronized void unregister() {
+    if (objectName == null) return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException ignore) {
+    } finally {
+      objectName = null;
+    }
+  }
+
+  @Override
+  public long getFramesRequested() {
+    return framesRequested.get();
+  }
+
+  @Override
+  public long getFramesPresented() {
+    return framesPresented.get();
+  }
+
+  @Override
+  public String getUpdateLatency() {
+    return updateLatency.toString();
+  }
+
+  @Override
+  public String getPaintDuration() {
+    return paintDuration.toString();
+  }
+
+  @Override
+  public String getCellsRedrawn() {
+    return cellsRedrawn.toString();
+  }
+
+  @Override
+  public String getInputLatency() {
+    return inputLatency.toString();
+  }
+
+  @Override
+  public long[] getUpdateLatencyHistogram() {
+    return updateLatency.getBuckets();
+  }
+
+  @Override
+  public long[] getPaintDurationHistogram() {
+    return paintDuration.getBuckets();
+  }
+
+  @Override
+  public long[] getCellsRedrawnHistogram() {
+    return cellsRedrawn.getBuckets();
+  }
+
+  @Override
+  public long[] getInputLatencyHistogram() {
+    return inputLatency.getBuckets();
+  }
+
+  @Override
+  public void reset() {
+    updateLatency.reset();
+    paintDuration.reset();
+    cellsRedrawn.reset();
+    inputLatency.reset();
+    framesRequested.set(0);
+    framesPresented.set(0);
+  }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+/**
+ * Times are in nanoseconds. Histograms have power of two buckets, the summaries show percentiles.
+ */
+public interface ScreenMetricsMBean {
+  long getFramesRequested();
+  long getFramesPresented();
+  String getUpdateLatency();
+  String getPaintDuration();
+  String getCellsRedrawn();
+  String getInputLatency();
+  long[] getUpdateLatencyHistogram();
+  long[] getPaintDurationHistogram();
+  long[] getCellsRedrawnHistogram();
+  long[] getInputLatencyHistogram();
+  void reset();
+}
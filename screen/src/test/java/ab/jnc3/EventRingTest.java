@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingTest {
+
+  @Test
+  void testToString() {
+    assertEquals("Close", EventRing.toString(EventRing.window(EventRing.CLOSE)));
+    assertEquals("a", EventRing.toString(EventRing.keyTyped('a', (char) 0, EventRing.SHIFT)));
+    assertEquals("Ctrl+Alt+a", EventRing.toString(EventRing.keyTyped('a', (char) 0, EventRing.CTRL | EventRing.ALT)));
+    assertEquals("Ctrl+j", EventRing.toString(EventRing.keyTyped('\n', 'j', EventRing.CTRL)));
+    assertEquals("Ctrl+J", EventRing.toString(EventRing.keyTyped('\n', 'j', EventRing.CTRL | EventRing.SHIFT)));
+    assertEquals("Alt+Enter", EventRing.toString(EventRing.keyTyped('\n', '\n', EventRing.ALT)));
+    assertEquals("Shift+Tab", EventRing.toString(EventRing.keyTyped('\t', (char) 0, EventRing.SHIFT)));
+    assertEquals("typed \\u0000", EventRing.toString(EventRing.keyTyped('\0', (char) 0, 0)));
+    assertEquals("\u00E9", EventRing.toString(EventRing.keyTyped('\u00E9', (char) 0, EventRing.SHIFT)));
+    assertEquals("Ctrl+Shift+Left",
+        EventRing.toString(EventRing.key(EventRing.KEY_PRESSED, KeyEvent.VK_LEFT, EventRing.CTRL | EventRing.SHIFT)));
+    assertEquals("+Spacebar", EventRing.toString(EventRing.key(EventRing.KEY_DOWN, KeyEvent.VK_SPACE, 0)));
+    assertEquals("-A", EventRing.toString(EventRing.key(EventRing.KEY_UP, KeyEvent.VK_A, 0)));
+    assertEquals("Mouse+B1", EventRing.toString(EventRing.mouseButton(EventRing.MOUSE_PRESSED, 1)));
+    assertEquals("Mouse-B3", EventRing.toString(EventRing.mouseButton(EventRing.MOUSE_RELEASED, 3)));
+    assertEquals("Mouse+0,-5,-1,7679", EventRing.toString(EventRing.mouseMoved(0, -5, -1, 7679)));
+    assertEquals("Mouse-W2", EventRing.toString(EventRing.mouseWheel(-2)));
+    assertEquals("Mouse+W1", EventRing.toString(EventRing.mouseWheel(1)));
+  }
+
+  @Test
+  void ring() {
+    EventRing ring = new EventRing(3);
+    assertEquals(0, ring.poll());
+    for (int i = 1; i <= 5; i++) assertEquals(i <= 4, ring.offer(EventRing.mouseWheel(i)));
+    assertEquals(1, ring.getDropped());
+    for (int i = 1; i <= 4; i++) assertEquals(i, EventRing.getCode(ring.poll()));
+    assertTrue(ring.isEmpty());
+    assertEquals(0, ring.poll());
+  }
+}
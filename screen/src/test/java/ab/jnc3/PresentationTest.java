@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresentationTest {
+
+  private static void assertScaled(BufferedImage image, BufferedImage buffer) {
+    int w = image.getWidth();
+    int h = image.getHeight();
+    int bw = buffer.getWidth();
+    int bh = buffer.getHeight();
+    for (int y = 0; y < bh; y++) {
+      for (int x = 0; x < bw; x++) {
+        assertEquals(image.getRGB(x * w / bw, y * h / bh), buffer.getRGB(x, y), x + "," + y);
+      }
+    }
+  }
+
+  private static void assertDrawn(BufferedImage image, BufferedImage buffer) {
+    BufferedImage expected = new BufferedImage(buffer.getWidth(), buffer.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = expected.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    graphics.drawImage(image, 0, 0, expected.getWidth(), expected.getHeight(), null);
+    graphics.dispose();
+    assertScaled(expected, buffer);
+  }
+
+  @Test
+  void getView() {
+    assertEquals(new Rectangle(80, 0, 640, 480), Presentation.getView(800, 480, new Dimension(4, 3)));
+    assertEquals(new Rectangle(0, 60, 640, 480), Presentation.getView(640, 600, new Dimension(4, 3)));
+  }
+
+  @Test
+  void render() {
+    BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+    BufferedImage indexed = new BufferedImage(4, 3, BufferedImage.TYPE_BYTE_INDEXED, new IndexColorModel(
+        8, 4, new int[]{0, 0xFF0000, 0x00FF00, 0x0000FF}, 0, false, -1, DataBuffer.TYPE_BYTE));
+    for (int i = 0; i < 12; i++) {
+      image.setRGB(i % 4, i / 4, i * 0x151515);
+      indexed.getRaster().setSample(i % 4, i / 4, 0, i % 4);
+    }
+    Presentation presentation = new Presentation();
+    Dimension aspectRatio = new Dimension(4, 3);
+    for (BufferedImage source : new BufferedImage[]{image, indexed}) {
+      for (int scale = 1; scale <= 3; scale++) {
+        presentation.render(source, 4 * scale + 2, 3 * scale, aspectRatio, false, null);
+        assertScaled(source, presentation.getBuffer());
+      }
+    }
+    // partial update
+    presentation.render(image, 12, 9, aspectRatio, false, null);
+    image.setRGB(1, 1, 0xFFFFFF);
+    image.setRGB(3, 2, 0xFFFFFF);
+    presentation.damage(new Rectangle(1, 1, 1, 1));
+    presentation.render(image, 12, 9, aspectRatio, false, null);
+    assertEquals(0xFFFFFFFF, presentation.getBuffer().getRGB(5, 5));
+    assertNotEquals(0xFFFFFFFF, presentation.getBuffer().getRGB(11, 8));
+  }
+
+  @Test
+  void renderIndexed() {
+    int[] colorMap = {0, 0xFF0000, 0x00FF00, 0x0000FF};
+    BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_BYTE_INDEXED,
+        new IndexColorModel(8, 4, colorMap, 0, false, -1, DataBuffer.TYPE_BYTE));
+    for (int i = 0; i < 12; i++) image.getRaster().setSample(i % 4, i / 4, 0, i % 4);
+    Presentation presentation = new Presentation();
+    Dimension aspectRatio = new Dimension(4, 3);
+    presentation.render(image, 10, 7, aspectRatio, false, null); // 9x6, not integer
+    assertDrawn(image, presentation.getBuffer());
+    // partial update through the rgb copy
+    image.getRaster().setSample(1, 1, 0, 3);
+    presentation.damage(new Rectangle(1, 1, 1, 1));
+    presentation.render(image, 10, 7, aspectRatio, false, null);
+    assertDrawn(image, presentation.getBuffer());
+    // new palette, everything is converted again
+    colorMap[0] = 0xFFFFFF;
+    image = new BufferedImage(new IndexColorModel(8, 4, colorMap, 0, false, -1, DataBuffer.TYPE_BYTE),
+        image.getRaster(), false, null);
+    presentation.render(image, 10, 7, aspectRatio, false, null);
+    assertDrawn(image, presentation.getBuffer());
+    presentation.render(image, 12, 9, aspectRatio, false, null);
+    assertScaled(image, presentation.getBuffer());
+  }
+}
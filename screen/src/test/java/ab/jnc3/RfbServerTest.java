@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RfbServerTest {
+
+  private static void request(DataOutputStream out, boolean incremental, int w, int h) throws IOException {
+    out.write(new byte[]{3, (byte) (incremental ? 1 : 0), 0, 0, 0, 0});
+    out.writeShort(w);
+    out.writeShort(h);
+    out.flush();
+  }
+
+  private static void encodings(DataOutputStream out, int encoding) throws IOException {
+    out.write(new byte[]{2, 0, 0, 1});
+    out.writeInt(encoding);
+    out.flush();
+  }
+
+  private static int pixel(DataInputStream in) throws IOException {
+    return Integer.reverseBytes(in.readInt()); // little-endian
+  }
+
+  @Test
+  void loopback() throws IOException, InterruptedException {
+    BlockingQueue<String> keys = new LinkedBlockingQueue<>();
+    Screen screen = new Screen(image -> {});
+    screen.image = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+    screen.image.setRGB(39, 19, 0x123456);
+    screen.keyListener = keys::add;
+    try (RfbServer server = new RfbServer(screen, 0);
+         Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      screen.frameListener = server;
+      socket.setSoTimeout(5000);
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      byte[] version = new byte[12];
+      in.readFully(version);
+      assertEquals("RFB 003.008\n", new String(version, StandardCharsets.US_ASCII));
+      out.write(version);
+      assertEquals(1, in.readUnsignedByte());
+      assertEquals(1, in.readUnsignedByte());
+      out.write(new byte[]{1, 1}); // security none, shared
+      assertEquals(0, in.readInt());
+      assertEquals(40, in.readUnsignedShort());
+      assertEquals(20, in.readUnsignedShort());
+      in.readFully(new byte[16]);
+      in.readFully(new byte[in.readInt()]);
+
+      // full update, 3x2 tiles
+      request(out, false, 40, 20);
+      assertEquals(0, in.readUnsignedShort());
+      assertEquals(6, in.readUnsignedShort());
+      for (int i = 0; i < 6; i++) {
+        int x = in.readUnsignedShort();
+        int y = in.readUnsignedShort();
+        int w = in.readUnsignedShort();
+        int h = in.readUnsignedShort();
+        assertEquals(0, in.readInt());
+        for (int p = 0; p < w * h; p++) assertEquals(x + p % w == 39 && y + p / w == 19 ? 0x123456 : 0, pixel(in));
+      }
+
+      // one changed tile, hextile
+      encodings(out, 5);
+      request(out, true, 40, 20);
+      for (int y = 16; y < 20; y++) for (int x = 16; x < 32; x++) screen.image.setRGB(x, y, 0xFF0000);
+      screen.update();
+      assertEquals(0, in.readUnsignedShort());
+      assertEquals(1, in.readUnsignedShort());
+      assertArrayEquals(new int[]{16, 16, 16, 4}, new int[]{
+          in.readUnsignedShort(), in.readUnsignedShort(), in.readUnsignedShort(), in.readUnsignedShort()});
+      assertEquals(5, in.readInt());
+      assertEquals(2, in.readUnsignedByte()); // background specified
+      assertEquals(0xFF0000, pixel(in));
+
+      // one changed pixel, RRE
+      encodings(out, 2);
+      request(out, true, 40, 20);
+      screen.image.setRGB(1, 1, 0x00FF00);
+      screen.update();
+      assertEquals(0, in.readUnsignedShort());
+      assertEquals(1, in.readUnsignedShort());
+      in.readFully(new byte[8]);
+      assertEquals(2, in.readInt());
+      assertEquals(1, in.readInt());
+      assertEquals(0, pixel(in));
+      assertEquals(0x00FF00, pixel(in));
+      assertArrayEquals(new int[]{1, 1, 1, 1}, new int[]{
+          in.readUnsignedShort(), in.readUnsignedShort(), in.readUnsignedShort(), in.readUnsignedShort()});
+
+      // input
+      for (int keysym : new int[]{'a', 0xFFE3, 'c', 0xFF0D}) {
+        out.write(new byte[]{4, 1, 0, 0});
+        out.writeInt(keysym);
+      }
+      out.write(new byte[]{5, 1, 0, 5, 0, 7});
+      out.flush();
+      for (String key : new String[]{"a", "Ctrl+c", "Ctrl+Enter", "Mouse+5,+7,5,7", "Mouse+B1"}) {
+        assertEquals(key, keys.poll(5, TimeUnit.SECONDS));
+      }
+    }
+  }
+
+}
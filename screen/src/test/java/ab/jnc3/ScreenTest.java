@@ -20,13 +20,152 @@ package ab.jnc3;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class ScreenTest {
 
+  @Test
+  void headless() {
+    List<Integer> frames = new ArrayList<>();
+    Screen screen = new Screen(image -> frames.add(image.getRGB(1, 2)));
+    assertTrue(screen.isHeadless());
+    screen.image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+    screen.image.setRGB(1, 2, 0x55FF55);
+    screen.update();
+    screen.image.setRGB(1, 2, 0xFF5555);
+    screen.update();
+    screen.setFullScreen(false);
+    screen.setBackground(0);
+    screen.enablePointer();
+    screen.close();
+    assertEquals(List.of(0xFF55FF55, 0xFFFF5555), frames);
+  }
+
+  @Test
+  void present() {
+    List<BufferedImage> frames = new ArrayList<>();
+    Screen screen = new Screen(frames::add);
+    screen.image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+    Set<BufferedImage> buffers = new HashSet<>();
+    for (int i = 0; i < 6; i++) {
+      BufferedImage image = screen.image;
+      buffers.add(image);
+      image.setRGB(i % 4, i / 4, 0xFFFFFF);
+      screen.present(new Rectangle(i % 4, i / 4, 1, 1));
+      assertNotSame(image, screen.image);
+      assertSame(image, frames.get(i));
+      for (int j = 0; j < 12; j++) assertEquals(j <= i ? -1 : 0xFF000000, screen.image.getRGB(j % 4, j / 4));
+    }
+    assertEquals(2, buffers.size()); // headless, the front buffer is never taken
+  }
+
+  @Test
+  void frameCapture() throws InterruptedException {
+    List<Long> frames = new ArrayList<>();
+    Screen screen = new Screen(image -> {});
+    screen.image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+    FrameCapture capture = new FrameCapture((frame, sequence) -> {
+      assertNotSame(screen.image, frame);
+      frames.add((long) frame.getRGB(0, 0) << 32 | sequence);
+    }, 2, true);
+    screen.frameListener = capture;
+    for (int i = 0; i < 5; i++) {
+      screen.image.setRGB(0, 0, i);
+      if (i < 3) screen.update(); else screen.present();
+    }
+    capture.close();
+    assertEquals(List.of(0xFF000000_00000000L, 0xFF000001_00000001L, 0xFF000002_00000002L,
+        0xFF000003_00000003L, 0xFF000004_00000004L), frames);
+    assertEquals(0, capture.getDropped());
+
+    CountDownLatch latch = new CountDownLatch(1);
+    capture = new FrameCapture((frame, sequence) -> {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }, 2, false);
+    for (int i = 0; i < 5; i++) capture.accept(screen.image);
+    assertEquals(5, capture.getFrames());
+    assertEquals(3, capture.getDropped());
+    latch.countDown();
+    capture.close();
+  }
+
+  @Test
+  void mappedFrameBuffer() throws IOException {
+    Path file = Files.createTempFile("screen", ".fb");
+    IndexColorModel palette = new IndexColorModel(8, 2, new int[]{0, 0xFF5555}, 0, false, -1, DataBuffer.TYPE_BYTE);
+    try (MappedFrameBuffer rgb = new MappedFrameBuffer(file, 4, 3, null);
+         MappedFrameBuffer indexed = new MappedFrameBuffer(file.resolveSibling(file.getFileName() + "8"), 4, 3, palette)) {
+      Screen screen = new Screen(image -> {});
+      screen.image = rgb.getImage();
+      screen.frameListener = rgb;
+      screen.image.setRGB(1, 2, 0x55FF55);
+      screen.image.getRaster().getDataBuffer().setElem(3 + 2 * 4, 0x5555FF);
+      screen.update();
+      screen.present(); // copies the back buffer
+      ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+      assertEquals(MappedFrameBuffer.MAGIC, header.getInt(0));
+      assertEquals(MappedFrameBuffer.FORMAT_INT_RGB, header.getInt(12));
+      assertEquals(2, header.getLong(MappedFrameBuffer.SEQUENCE_OFFSET));
+      assertEquals(0x55FF55, header.getInt(64 + (1 + 2 * 4) * 4));
+      assertEquals(0x5555FF, header.getInt(64 + (3 + 2 * 4) * 4));
+      assertEquals(0xFF5555FF, rgb.getImage().getRGB(3, 2));
+
+      indexed.getImage().getRaster().getDataBuffer().setElem(2, 1);
+      indexed.accept(indexed.getImage());
+      assertEquals(0xFFFF5555, indexed.getImage().getRGB(2, 0));
+      screen.close();
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(file.resolveSibling(file.getFileName() + "8"));
+    }
+  }
+
+  @Test
+  void metrics() throws JMException {
+    Screen screen = new Screen(image -> {});
+    screen.metrics.register("test");
+    for (int i = 0; i < 5; i++) screen.update();
+    screen.close();
+    assertEquals(5, screen.metrics.getFramesRequested());
+    assertEquals(5, screen.metrics.getFramesPresented());
+    assertEquals(5, screen.metrics.paintDuration.getCount());
+    Histogram histogram = new Histogram();
+    for (int i = 0; i < 100; i++) histogram.record(i);
+    assertEquals(64, histogram.getPercentile(0.5));
+    assertEquals(99, histogram.getPercentile(0.99));
+    assertEquals(99, histogram.getMax());
+    assertEquals(100, histogram.getCount());
+    screen.metrics.register("test");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(5L, server.getAttribute(new ObjectName("ab.jnc3:type=Screen,name=\"test\""), "FramesPresented"));
+    screen.metrics.unregister();
+  }
+
   @Disabled
   @Test
   void mouseListener() throws InterruptedException {
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import ab.tui.Tui;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Text device on an ANSI terminal that sends only the changed cells. Cells are packed like in Tui3,
+ * attr << 24 | code point. The cursor takes the shortest of absolute, relative and carriage return moves,
+ * or rewrites a short gap of unchanged cells, the color is set only when it changes. Each update is
+ * one write of a reused byte buffer. The terminal should be in raw mode, stty raw -echo.
+ */
+public class AnsiTui implements Tui {
+
+  private static final int UNKNOWN = -1;
+  private final OutputStream output;
+  private final InputStream input;
+  private final Dimension size;
+  private final int[] front; // on the terminal
+  private final int[] back;
+  private byte[] buffer = new byte[0x1000];
+  private int length;
+  private int cursorX = UNKNOWN;
+  private int cursorY = UNKNOWN;
+  private int attr = UNKNOWN;
+  private volatile Consumer<String> keyListener;
+  private boolean open;
+
+  /**
+   * @param input keyboard, null if not needed
+   */
+  public AnsiTui(OutputStream output, InputStream input, Dimension size) {
+    this.output = output;
+    this.input = input;
+    this.size = new Dimension(size);
+    front = new int[size.width * size.height];
+    back = new int[size.width * size.height];
+  }
+
+  @Override
+  public Tui open() {
+    if (open) throw new IllegalStateException("open");
+    open = true;
+    Arrays.fill(front, UNKNOWN); // everything is drawn on the first update
+    Arrays.fill(back, ' ');
+    cursorX = UNKNOWN;
+    cursorY = UNKNOWN;
+    attr = UNKNOWN;
+    length = 0;
+    append("\u001B[?1049h\u001B[?25l\u001B[0m\u001B[2J"); // alternate screen, hide cursor, reset, clear
+    flush();
+    if (input != null) {
+      Thread thread = new Thread(this::read, "ansi");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    return this;
+  }
+
+  @Override
+  public void close() {
+    if (!open) return;
+    open = false;
+    length = 0;
+    append("\u001B[0m\u001B[?25h\u001B[?1049l");
+    flush();
+  }
+
+  @Override
+  public Dimension getSize() {
+    return new Dimension(size);
+  }
+
+  @Override
+  public void print(int x, int y, String s, int attr) {
+    attr <<= 24;
+    int i = x + y * size.width;
+    for (int j = 0; j < s.length(); i++) {
+      int c = s.codePointAt(j);
+      j += Character.charCount(c);
+      back[i] = attr | (c < 0x20 || c == 0x7F ? ' ' : c);
+    }
+  }
+
+  @Override
+  public void update() {
+    int w = size.width;
+    length = 0;
+    for (int y = 0, i = 0; y < size.height; y++) {
+      for (int x = 0; x < w; x++, i++) {
+        int c = back[i];
+        if (front[i] == c) continue;
+        moveTo(x, y);
+        setAttr(c >>> 24);
+        appendCodePoint(c & 0xFFFFFF);
+        front[i] = c;
+        cursorX = x + 1 < w ? x + 1 : UNKNOWN; // the last column leaves the cursor in a terminal specific state
+      }
+    }
+    if (length > 0) flush();
+  }
+
+  @Override
+  public void setKeyListener(Consumer<String> keyListener) {
+    this.keyListener = keyListener;
+  }
+
+  private void flush() {
+    try {
+      output.write(buffer, 0, length);
+      output.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void append(int b) {
+    if (length == buffer.length) buffer = Arrays.copyOf(buffer, length * 2);
+    buffer[length++] = (byte) b;
+  }
+
+  private void append(String s) {
+    for (int i = 0; i < s.length(); i++) append(s.charAt(i));
+  }
+
+  private void appendNumber(int n) {
+    if (n >= 10) appendNumber(n / 10);
+    append('0' + n % 10);
+  }
+
+  private void appendCodePoint(int c) {
+    if (c < 0x80) append(c);
+    else if (c < 0x800) {
+      append(0xC0 | c >> 6);
+      append(0x80 | c & 0x3F);
+    } else if (c < 0x10000) {
+      append(0xE0 | c >> 12);
+      append(0x80 | c >> 6 & 0x3F);
+      append(0x80 | c & 0x3F);
+    } else {
+      append(0xF0 | c >> 18);
+      append(0x80 | c >> 12 & 0x3F);
+      append(0x80 | c >> 6 & 0x3F);
+      append(0x80 | c & 0x3F);
+    }
+  }
+
+  private static int digits(int n) {
+    return n < 10 ? 1 : n < 100 ? 2 : n < 1000 ? 3 : 4;
+  }
+
+  /**
+   * @return bytes of CSI n command, n is omitted if 1
+   */
+  private static int csiLength(int n) {
+    return n == 1 ? 3 : 3 + digits(n);
+  }
+
+  private void csi(int n, char command) {
+    append(0x1B);
+    append('[');
+    if (n != 1) appendNumber(n);
+    append(command);
+  }
+
+  /**
+   * @return bytes of the horizontal move from the cursor column in the row y, or MAX_VALUE
+   */
+  private int horizontalLength(int x, int y) {
+    if (cursorX == UNKNOWN) return Integer.MAX_VALUE;
+    if (x == cursorX) return 0;
+    if (x == 0) return 1; // carriage return
+    if (x < cursorX) return Math.min(csiLength(cursorX - x), 1 + csiLength(x));
+    int rewrite = x - cursorX;
+    for (int i = y * size.width + cursorX, n = i + rewrite; i < n && rewrite < Integer.MAX_VALUE; i++) {
+      int c = front[i];
+      if (c != back[i] || c >>> 24 != attr || (c & 0xFFFFFF) >= 0x80) rewrite = Integer.MAX_VALUE;
+    }
+    return Math.min(csiLength(x - cursorX), rewrite);
+  }
+
+  private void horizontal(int x, int y) {
+    if (x == cursorX) return;
+    if (x == 0) {
+      append('\r');
+    } else if (x < cursorX) {
+      if (csiLength(cursorX - x) <= 1 + csiLength(x)) csi(cursorX - x, 'D');
+      else {
+        append('\r');
+        csi(x, 'C');
+      }
+    } else if (csiLength(x - cursorX) <= horizontalLength(x, y)) {
+      csi(x - cursorX, 'C');
+    } else for (int i = y * size.width + cursorX, n = i + x - cursorX; i < n; i++) append(front[i]);
+  }
+
+  private void moveTo(int x, int y) {
+    if (x == cursorX && y == cursorY) return;
+    int absolute = 3 + (y == 0 ? 0 : digits(y + 1)) + (x == 0 ? 0 : 1 + digits(x + 1)); // defaults omitted
+    int relative = Integer.MAX_VALUE;
+    if (cursorY != UNKNOWN) {
+      int dy = Math.abs(y - cursorY);
+      int vertical = dy == 0 ? 0 : y == cursorY + 1 && x == 0 ? 1 : csiLength(dy); // \r\n for the next row
+      int h = y == cursorY + 1 && x == 0 ? 1 : horizontalLength(x, y);
+      if (h < Integer.MAX_VALUE) relative = vertical + h;
+    }
+    if (absolute <= relative) {
+      append(0x1B);
+      append('[');
+      if (y > 0) appendNumber(y + 1);
+      if (x > 0) {
+        append(';');
+        appendNumber(x + 1);
+      }
+      append('H');
+    } else if (y == cursorY + 1 && x == 0) {
+      append('\r');
+      append('\n');
+    } else {
+      if (y > cursorY) csi(y - cursorY, 'B');
+      if (y < cursorY) csi(cursorY - y, 'A');
+      horizontal(x, y);
+    }
+    cursorX = x;
+    cursorY = y;
+  }
+
+  /**
+   * Sets only the part of the color that has changed, bright colors with 90 and 100.
+   */
+  private void setAttr(int a) {
+    if (a == attr) return;
+    int fg = a & 0xF;
+    int bg = a >> 4;
+    boolean setFg = attr == UNKNOWN || fg != (attr & 0xF);
+    boolean setBg = attr == UNKNOWN || bg != attr >> 4;
+    append(0x1B);
+    append('[');
+    if (setFg) appendNumber(fg < 8 ? 30 + fg : 82 + fg);
+    if (setFg && setBg) append(';');
+    if (setBg) appendNumber(bg < 8 ? 40 + bg : 92 + bg);
+    append('m');
+    attr = a;
+  }
+
+  private void key(String key) {
+    Consumer<String> keyListener = this.keyListener;
+    if (keyListener != null) keyListener.accept(key);
+  }
+
+  private static String csiKey(int parameter, int command) {
+    switch (command) {
+      case 'A': return "Up";
+      case 'B': return "Down";
+      case 'C': return "Right";
+      case 'D': return "Left";
+      case 'H': return "Home";
+      case 'F': return "End";
+      case 'P': return "F1";
+      case 'Q': return "F2";
+      case 'R': return "F3";
+      case 'S': return "F4";
+      case '~': switch (parameter) {
+        case 1: case 7: return "Home";
+        case 2: return "Insert";
+        case 3: return "Delete";
+        case 4: case 8: return "End";
+        case 5: return "PageUp";
+        case 6: return "PageDown";
+        case 15: return "F5";
+        case 17: return "F6";
+        case 18: return "F7";
+        case 19: return "F8";
+        case 20: return "F9";
+        case 21: return "F10";
+        case 23: return "F11";
+        case 24: return "F12";
+        default: return null;
+      }
+      default: return null;
+    }
+  }
+
+  /**
+   * Key notation of Screen, Ctrl+a for control characters, Alt+ for the escape prefix.
+   */
+  private static String controlKey(int b) {
+    switch (b) {
+      case '\r': case '\n': return "Enter";
+      case '\t': return "Tab";
+      case 0x08: case 0x7F: return "Backspace";
+      default: return "Ctrl+" + (char) (b + 0x60);
+    }
+  }
+
+  private void read() {
+    try {
+      byte[] utf8 = new byte[4];
+      while (open) {
+        int b = input.read();
+        if (b < 0) return;
+        if (b == 0x1B) {
+          if (input.available() == 0) {
+            key("Esc");
+            continue;
+          }
+          b = input.read();
+          if (b == '[' || b == 'O') {
+            int parameter = 0;
+            int command = input.read();
+            while (command >= '0' && command <= '9' || command == ';') {
+              parameter = command == ';' ? 0 : parameter * 10 + command - '0';
+              command = input.read();
+            }
+            String key = csiKey(parameter, command);
+            if (key != null) key(key);
+          } else key("Alt+" + (b < 0x20 || b == 0x7F ? controlKey(b) : String.valueOf((char) b)));
+        } else if (b < 0x20 || b == 0x7F) {
+          key(controlKey(b));
+        } else {
+          int n = b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+          utf8[0] = (byte) b;
+          for (int i = 1; i < n; i++) utf8[i] = (byte) input.read();
+          key(new String(utf8, 0, n, StandardCharsets.UTF_8));
+        }
+      }
+    } catch (IOException ignore) {}
+  }
+
+}
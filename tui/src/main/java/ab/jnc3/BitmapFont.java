@@ -18,28 +18,58 @@
 package ab.jnc3;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.zip.GZIPInputStream;
 
 public class BitmapFont {
   // .notdef = box, checkbox, checkbox x, box ?, diamond ?, ?
   public static final char[] NOTDEF = new char[]{'\u25A1', '\u2610', '\u2612', '\u2370', '\uFFFD', '?'};
   public int notdef;
-  public byte[] bitmap;
-  public int[] bitmapCache = new int[0];
-  public final short[][] unicode = new short[0x100][];
-  public char[] unicodeCache;
+  public byte[] bitmap; // null until getBitmap() for the fonts of fromPsf(Path)
+  private volatile ByteBuffer mapped; // glyphs in the file, until the bitmap is loaded
+  public int[] bitmapCache = new int[0]; // rows of cacheStride ints, the leftmost pixel in the sign bit
+  public int cacheStride = 1;
+  private volatile boolean[] uncached; // glyphs not in bitmapCache yet, null if all of them are
+  private int pending; // number of uncached glyphs
+  public final short[][] unicode = new short[0x100][]; // basic multilingual plane, glyph index & 0xFFFF
+  private final short[][][] planes = new short[0x11][][]; // code point trie: plane, block, glyph index
+  private final Map<String, Integer> sequences = new HashMap<>(); // glyphs of character sequences
+  private volatile Blitter blitter;
+  private final Set<short[]> shared = Collections.newSetFromMap(new IdentityHashMap<>()); // copy on write blocks
+  private boolean frozen;
+  public char[] unicodeCache; // see getUnicodeCache()
+  private ByteBuffer unicodeTable; // table of the file, decoded into unicodeCache on demand
+  private boolean psf1Table;
   public int length;
   public int byteSize;
   public int height;
@@ -51,6 +81,7 @@ public class BitmapFont {
     this.height = height;
     this.width = width;
     this.bitmap = new byte[length * byteSize];
+    planes[0] = unicode;
     for (int i = 0x20; i < 0x7F; i++) put((char) i, i); // default ascii
   }
 
@@ -58,20 +89,88 @@ public class BitmapFont {
     this(8, 0);
   }
 
+  private BitmapFont(BitmapFont font) {
+    length = font.length;
+    byteSize = font.byteSize;
+    height = font.height;
+    width = font.width;
+    notdef = font.notdef;
+    bitmap = font.getBitmap().clone();
+    bitmapCache = font.bitmapCache.clone();
+    cacheStride = font.cacheStride;
+    uncached = font.uncached == null ? null : font.uncached.clone();
+    pending = font.pending;
+    unicodeCache = font.unicodeCache;
+    unicodeTable = font.unicodeTable;
+    psf1Table = font.psf1Table;
+    sequences.putAll(font.sequences);
+    planes[0] = unicode;
+    for (int p = 0; p < planes.length; p++) {
+      short[][] plane = font.planes[p];
+      if (plane == null) continue;
+      if (p > 0) planes[p] = new short[0x100][];
+      System.arraycopy(plane, 0, planes[p], 0, 0x100);
+      for (short[] block : plane) if (block != null) shared.add(block);
+    }
+    font.shared.addAll(shared);
+  }
+
+  /**
+   * Independent font of the same glyphs. The unicode blocks are shared until one of the fonts
+   * puts a character into them, so the copy is cheap to make for a few extra mappings.
+   */
+  public synchronized BitmapFont copy() {
+    return new BitmapFont(this);
+  }
+
+  /**
+   * Makes the font read-only for sharing, put, multiply, cacheBitmap throw from now on.
+   * The public arrays of a frozen font must not be written either, copy() is not frozen.
+   */
+  public BitmapFont freeze() {
+    frozen = true;
+    blitter = null;
+    return this;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private void testNotFrozen() {
+    if (frozen) throw new IllegalStateException("frozen font, use copy()");
+  }
+
+  /**
+   * Surrogates are parts of supplementary code points, use the int methods for those.
+   */
   public static void testValidCharacter(char c) {
-    if (Character.isSurrogate(c)) throw new UnsupportedCharsetException("FIXME unicode supplementary planes");
+    if (Character.isSurrogate(c)) throw new IllegalArgumentException("surrogate, use code point");
   }
 
   public void put(char c, int i) {
     testValidCharacter(c);
-    int h = c >> 8 & 0xFF;
-    if (unicode[h] == null) {
+    put((int) c, i);
+  }
+
+  /**
+   * @param i glyph index up to 0xFFFE
+   */
+  public void put(int codePoint, int i) {
+    if (!Character.isValidCodePoint(codePoint)) throw new IllegalArgumentException("code point");
+    testNotFrozen();
+    short[][] plane = planes[codePoint >> 16];
+    if (plane == null) plane = planes[codePoint >> 16] = new short[0x100][];
+    int h = codePoint >> 8 & 0xFF;
+    if (plane[h] == null) {
       short[] a = new short[0x100];
       Arrays.fill(a, (short) -1);
-      unicode[h] = a;
+      plane[h] = a;
     }
-    unicode[h][c & 0xFF] = (short) i;
+    if (!shared.isEmpty() && shared.remove(plane[h])) plane[h] = plane[h].clone();
+    plane[h][codePoint & 0xFF] = (short) i;
     unicodeCache = null;
+    unicodeTable = null;
     for (char nd : NOTDEF) {
       notdef = get(nd);
       if (notdef >= 0) break;
@@ -79,11 +178,38 @@ public class BitmapFont {
     if (notdef < 0) notdef = 0;
   }
 
+  /**
+   * @return glyph index or -1, surrogates are not displayable
+   */
   public int get(char c) {
-    testValidCharacter(c);
-    int h = c >> 8 & 0xFF;
-    if (unicode[h] == null) return -1;
-    return unicode[h][c & 0xFF];
+    short[] a = unicode[c >> 8];
+    if (a == null) return -1;
+    int i = a[c & 0xFF] & 0xFFFF;
+    return i == 0xFFFF ? -1 : i;
+  }
+
+  public int get(int codePoint) {
+    if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) return -1;
+    short[][] plane = planes[codePoint >> 16];
+    if (plane == null) return -1;
+    short[] a = plane[codePoint >> 8 & 0xFF];
+    if (a == null) return -1;
+    int i = a[codePoint & 0xFF] & 0xFFFF;
+    return i == 0xFFFF ? -1 : i;
+  }
+
+  /**
+   * Glyph of a character sequence, like a letter with a combining accent.
+   */
+  public void put(String sequence, int i) {
+    testNotFrozen();
+    sequences.put(sequence, i);
+    unicodeCache = null;
+    unicodeTable = null;
+  }
+
+  public int get(String sequence) {
+    return sequences.getOrDefault(sequence, -1);
   }
 
   public int getCode(char c) {
@@ -91,99 +217,57 @@ public class BitmapFont {
     return i < 0 ? notdef : i;
   }
 
-  private void fromPsf1Unicode(char[] chars) {
-    int i = 0;
-    for (char c : chars) if (c == '\uFFFF') i++; else put(c, i);
-    unicodeCache = chars;
+  public int getCode(int codePoint) {
+    int i = get(codePoint);
+    return i < 0 ? notdef : i;
   }
 
   public static BitmapFont fromPsf1(byte[] b) {
     assert b.length >= 4 && b[0] == 0x36 && b[1] == 0x04 : "PSF1 header";
-    // font
-    BitmapFont font = new BitmapFont(8, b[3]);
-    boolean isUnicode = (b[2] & 6) != 0;
-    font.length = (b[2] & 1) == 0 ? 0x100 : 0x200;
-    // bitmap
-    int end = 4 + font.length * font.byteSize;
-    assert b.length >= end + (isUnicode ? font.length * 2 : 0): "PSF1 file size";
-    font.bitmap = Arrays.copyOfRange(b, 4, end);
-    // unicode
-    CharBuffer buffer = ByteBuffer.wrap(Arrays.copyOfRange(b, end, b.length))
-        .order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
-    if (isUnicode) {
-      StringBuilder s = new StringBuilder();
-      for (int i = 0; i < font.length;) {
-        char c = buffer.get();
-        s.append(c);
-        if (c == '\uFFFE') throw new UnsupportedCharsetException("FIXME series of characters");
-        if (c == '\uFFFF') i++;
-      }
-      font.fromPsf1Unicode(s.toString().toCharArray());
-    } else throw new UnsupportedCharsetException("default charset not defined");
-    assert !buffer.hasRemaining() : "PSF1 file size";
+    BitmapFont font = readPsf(ByteBuffer.wrap(b));
     font.cacheBitmap();
     return font;
   }
 
   public static BitmapFont fromPsf2(byte[] b) {
-    int[] header = new int[8];
-    ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(header);
-    assert header[0] == 0x864AB572 && header[1] == 0 && header[2] == 0x20 : "PSF2 header";
-    // font
-    BitmapFont font = new BitmapFont(header[7], header[6]);
-    boolean isUnicode = (header[3] & 1) == 1;
-    font.length = header[4];
-    font.byteSize = header[5];
-    font.height = header[6];
-    font.width = header[7];
-    assert font.byteSize == (font.width + 7) / 8 * font.height : "PSF2 height width";
-    // bitmap
-    int end = 0x20 + font.length * font.byteSize;
-    assert b.length >= end + (isUnicode ? font.length : 0) : "PSF2 file size";
-    font.bitmap = Arrays.copyOfRange(b, 0x20, end);
-    // unicode
-    if (isUnicode) {
-      StringBuilder s = new StringBuilder();
-      for (int i = 0; i < font.length; i++) {
-        int s0 = end;
-        for (byte c = b[end++]; c != -1; c = b[end++]) {
-          if (c == (byte) 0xFE) throw new UnsupportedCharsetException("FIXME series of characters");
-        }
-        s.append(new String(Arrays.copyOfRange(b, s0, end - 1), StandardCharsets.UTF_8)).append('\uFFFF');
-      }
-      font.fromPsf1Unicode(s.toString().toCharArray());
-    }
-    assert end == b.length : "PSF2 file size";
+    assert b.length >= 4 && b[0] == 0x72 && b[1] == (byte) 0xB5 : "PSF2 header";
+    BitmapFont font = readPsf(ByteBuffer.wrap(b));
     font.cacheBitmap();
     return font;
   }
 
   private char[] toPsf1Unicode() {
-    char[][] u = new char[length][16];
-    int[] us = new int[length];
-    int ts = length;
-    for (int h = 0; h < 0x100; h++) {
-      short[] uh = unicode[h];
-      if (uh == null) continue;
-      for (int l = 0; l < 0x100; l++) {
-        short uhl = uh[l];
-        if (uhl < 0) continue;
-        u[uhl][us[uhl]++] = (char) (h << 8 | l);
-        ts++;
+    StringBuilder[] u = new StringBuilder[length];
+    for (int i = 0; i < length; i++) u[i] = new StringBuilder();
+    for (int p = 0; p < planes.length; p++) {
+      short[][] plane = planes[p];
+      if (plane == null) continue;
+      for (int h = 0; h < 0x100; h++) {
+        short[] uh = plane[h];
+        if (uh == null) continue;
+        for (int l = 0; l < 0x100; l++) {
+          int i = uh[l] & 0xFFFF;
+          if (i < length) u[i].appendCodePoint(p << 16 | h << 8 | l);
+        }
       }
     }
-    char[] chars = new char[ts];
-    for (int h = 0, i = 0; h < length; h++) {
-      char[] uh = u[h];
-      for (int l = 0; l < us[h]; l++) chars[i++] = uh[l];
-      chars[i++] = '\uFFFF';
-    }
-    return chars;
+    sequences.forEach((sequence, i) -> {
+      if (i < length) u[i].append('\uFFFE').append(sequence);
+    });
+    StringBuilder s = new StringBuilder();
+    for (StringBuilder uh : u) s.append(uh).append('\uFFFF');
+    return s.toString().toCharArray();
+  }
+
+  private boolean isSupplementary() {
+    for (int p = 1; p < planes.length; p++) if (planes[p] != null) return true;
+    return false;
   }
 
   public byte[] toPsf() {
-    if (width != 8 || (length != 0x100 && length != 0x200) || height != byteSize) return toPsf2();
-    char[] chars = unicodeCache == null ? toPsf1Unicode() : unicodeCache;
+    if (width != 8 || (length != 0x100 && length != 0x200) || height != byteSize || isSupplementary()) return toPsf2();
+    char[] chars = getUnicodeCache();
+    byte[] bitmap = getBitmap();
     ByteBuffer buffer = ByteBuffer.allocate(chars.length * 2).order(ByteOrder.LITTLE_ENDIAN);
     for (char c : chars) buffer.putChar(c);
     byte[] bytes = new byte[4 + bitmap.length + chars.length * 2];
@@ -198,50 +282,286 @@ public class BitmapFont {
   }
 
   public byte[] toPsf2() {
-    char[] chars = unicodeCache == null ? toPsf1Unicode() : unicodeCache;
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
-    try {
-      for (char c : chars) stream.write(c == '\uFFFF' ? new byte[]{-1}
-          : new String(new char[]{c}).getBytes(StandardCharsets.UTF_8));
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+    char[] chars = getUnicodeCache();
+    byte[] bitmap = getBitmap();
+    ByteBuffer buffer = ByteBuffer.allocate(0x20 + bitmap.length + chars.length * 3).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(0x864AB572);
+    buffer.putInt(0);
+    buffer.putInt(0x20);
+    buffer.putInt(1);
+    buffer.putInt(length);
+    buffer.putInt(byteSize);
+    buffer.putInt(height);
+    buffer.putInt(width);
+    buffer.put(bitmap);
+    for (int i = 0; i < chars.length; i++) { // utf-8, separators FF and FE
+      int c = chars[i];
+      if (Character.isHighSurrogate(chars[i]) && i + 1 < chars.length) c = Character.toCodePoint(chars[i], chars[++i]);
+      if (c == 0xFFFF || c == 0xFFFE) {
+        buffer.put((byte) (c & 0xFF));
+      } else if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+      } else if (c < 0x10000) {
+        buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+      } else {
+        buffer.put((byte) (0xF0 | c >> 18)).put((byte) (0x80 | c >> 12 & 0x3F))
+            .put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+      }
     }
-    byte[] unicode = stream.toByteArray();
-    ByteBuffer header = ByteBuffer.allocate(0x20).order(ByteOrder.LITTLE_ENDIAN);
-    header.putInt(0x864AB572);
-    header.putInt(0);
-    header.putInt(0x20);
-    header.putInt(1);
-    header.putInt(length);
-    header.putInt(byteSize);
-    header.putInt(height);
-    header.putInt(width);
-
-    byte[] bytes = new byte[0x20 + bitmap.length + unicode.length];
-    System.arraycopy(header.array(), 0, bytes, 0, 0x20);
-    System.arraycopy(bitmap, 0, bytes, 0x20, bitmap.length);
-    System.arraycopy(unicode, 0, bytes, 0x20 + bitmap.length, unicode.length);
-    return bytes;
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  /**
+   * @return code points that have glyphs, in ascending order
+   */
+  public IntStream codePoints() {
+    IntStream.Builder codePoints = IntStream.builder();
+    for (int p = 0; p < planes.length; p++) {
+      short[][] plane = planes[p];
+      if (plane == null) continue;
+      for (int h = 0; h < 0x100; h++) {
+        short[] block = plane[h];
+        if (block == null) continue;
+        for (int l = 0; l < 0x100; l++) if (block[l] != -1) codePoints.add(p << 16 | h << 8 | l);
+      }
+    }
+    return codePoints.build();
   }
 
+  /**
+   * Glyph rows of any width as 32 pixel words, one word per row for fonts up to 32 pixels wide.
+   */
   public void cacheBitmap() {
-    int cacheSize = this.length * this.height;
-    this.bitmapCache = new int[cacheSize];
+    testNotFrozen();
+    byte[] bitmap = getBitmap();
+    int rows = this.length * this.height;
+    int bytesPerLine = this.byteSize / this.height;
+    int stride = (bytesPerLine + 3) / 4;
+    int[] cache = new int[rows * stride];
+    for (int i = 0, j = 0; i < rows; i++) {
+      for (int x = 0, k = i * stride; x < bytesPerLine; x++, j++) {
+        cache[k + (x >> 2)] |= (bitmap[j] & 0xFF) << 24 - (x & 3) * 8;
+      }
+    }
+    this.cacheStride = stride;
+    this.bitmapCache = cache;
+    this.pending = 0;
+    this.uncached = null;
+  }
+
+  /**
+   * Loads a PSF file through a memory mapping. The glyph rows are decoded from the mapping on first use
+   * by drawCharSimple, the bitmap is read from it only when getBitmap() is called, by drawString
+   * for example. Gzipped files are read whole.
+   */
+  public static BitmapFont fromPsf(Path path) throws IOException {
+    MappedByteBuffer b;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (b.limit() > 2 && b.get(0) == 0x1F && b.get(1) == (byte) 0x8B) return fromPsf(Files.readAllBytes(path));
+    BitmapFont font = readPsf(b);
+    boolean[] uncached = new boolean[font.length];
+    Arrays.fill(uncached, true);
+    font.cacheStride = (font.byteSize / font.height + 3) / 4;
+    font.bitmapCache = new int[font.length * font.height * font.cacheStride];
+    font.pending = font.length;
+    font.uncached = uncached;
+    return font;
+  }
+
+  /**
+   * PSF1 or PSF2 font, the unicode table is indexed in one pass straight into the glyph index.
+   * The glyphs stay in the buffer, the bitmap cache is left to the caller.
+   */
+  private static BitmapFont readPsf(ByteBuffer b) {
+    b.order(ByteOrder.LITTLE_ENDIAN);
+    BitmapFont font;
+    boolean psf1 = b.limit() > 4 && b.get(0) == 0x36 && b.get(1) == 0x04;
+    boolean isUnicode;
+    if (psf1) {
+      font = new BitmapFont(8, b.get(3) & 0xFF);
+      isUnicode = (b.get(2) & 6) != 0;
+      font.length = (b.get(2) & 1) == 0 ? 0x100 : 0x200;
+      b.position(4);
+    } else if (b.limit() > 0x20 && b.getInt(0) == 0x864AB572) {
+      font = new BitmapFont(b.getInt(28), b.getInt(24));
+      isUnicode = (b.getInt(12) & 1) == 1;
+      font.length = b.getInt(16);
+      if (b.getInt(20) != font.byteSize) throw new IllegalStateException("PSF2 height width");
+      b.position(b.getInt(8));
+    } else {
+      byte[] header = new byte[4];
+      for (int j = 0; j < Math.min(b.limit(), 4); j++) header[j] = b.get(j);
+      throw new IllegalStateException(String.format("PSF header %02X %02X %02X %02X",
+          header[0], header[1], header[2], header[3]));
+    }
+    int end = b.position() + font.length * font.byteSize;
+    font.bitmap = null;
+    font.mapped = b.duplicate().limit(end).slice();
+    b.position(end);
+    if (psf1 && !isUnicode) throw new UnsupportedCharsetException("default charset not defined");
+    if (psf1) font.indexPsf1Unicode(b); else if (isUnicode) font.indexPsf2Unicode(b);
+    if (psf1 || isUnicode) {
+      ByteBuffer table = b.duplicate().position(end).limit(b.position()).slice();
+      if (!b.isDirect()) table = ByteBuffer.wrap(Arrays.copyOfRange(table.array(),
+          table.arrayOffset(), table.arrayOffset() + table.limit())); // the input array is not kept
+      font.unicodeTable = table;
+      font.psf1Table = psf1;
+    }
+    assert !b.hasRemaining() : "PSF file size";
+    return font;
+  }
+
+  /**
+   * PSF1 unicode table, UTF-16 characters of each glyph end with FFFF, sequences start with FFFE.
+   */
+  private void indexPsf1Unicode(ByteBuffer b) {
+    for (int i = 0; i < length; ) {
+      char c = b.getChar();
+      if (c == '\uFFFF') {
+        i++;
+      } else if (c == '\uFFFE') {
+        StringBuilder sequence = new StringBuilder();
+        while (b.getChar(b.position()) != '\uFFFE' && b.getChar(b.position()) != '\uFFFF') {
+          sequence.append(b.getChar());
+        }
+        if (sequence.length() > 0) put(sequence.toString(), i);
+      } else if (Character.isHighSurrogate(c) && Character.isLowSurrogate(b.getChar(b.position()))) {
+        put(Character.toCodePoint(c, b.getChar()), i);
+      } else put((int) c, i);
+    }
+  }
+
+  /**
+   * PSF2 unicode table, UTF-8 characters of each glyph end with FF, sequences start with FE.
+   */
+  private void indexPsf2Unicode(ByteBuffer b) {
+    for (int i = 0; i < length; ) {
+      int c = b.get() & 0xFF;
+      if (c == 0xFF) {
+        i++;
+      } else if (c == 0xFE) {
+        ByteArrayOutputStream sequence = new ByteArrayOutputStream();
+        while (b.get(b.position()) != (byte) 0xFE && b.get(b.position()) != (byte) 0xFF) sequence.write(b.get());
+        String s = sequence.toString(StandardCharsets.UTF_8);
+        if (!s.isEmpty()) put(s, i);
+      } else {
+        int n = c < 0x80 ? 0 : c < 0xE0 ? 1 : c < 0xF0 ? 2 : 3; // utf-8 continuation bytes
+        int codePoint = c & (0x7F >> n);
+        for (; n > 0; n--) codePoint = codePoint << 6 | b.get() & 0x3F;
+        put(codePoint, i);
+      }
+    }
+  }
+
+  /**
+   * Glyph bitmap, loaded from the mapping first for the fonts of fromPsf(Path).
+   */
+  public byte[] getBitmap() {
+    return mapped == null ? bitmap : loadBitmap();
+  }
+
+  private synchronized byte[] loadBitmap() {
+    ByteBuffer mapped = this.mapped;
+    if (mapped != null) {
+      byte[] bitmap = new byte[mapped.limit()];
+      mapped.duplicate().get(bitmap);
+      this.bitmap = bitmap;
+      this.mapped = null; // publishes the bitmap
+    }
+    return bitmap;
+  }
+
+  /**
+   * Unicode table in the PSF1 layout, decoded from the table of the file for the fonts read from PSF,
+   * built from the glyph index otherwise.
+   */
+  public synchronized char[] getUnicodeCache() {
+    if (unicodeCache == null && unicodeTable != null) {
+      ByteBuffer table = unicodeTable.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      if (psf1Table) {
+        char[] chars = new char[table.limit() / 2];
+        table.asCharBuffer().get(chars);
+        unicodeCache = chars;
+      } else {
+        byte[] bytes = new byte[table.limit()];
+        table.get(bytes);
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0, s0 = 0; i < bytes.length; i++) { // FE and FF are not in utf-8
+          if (bytes[i] != (byte) 0xFE && bytes[i] != (byte) 0xFF) continue;
+          chars.append(new String(bytes, s0, i - s0, StandardCharsets.UTF_8)).append((char) (0xFF00 | bytes[i] & 0xFF));
+          s0 = i + 1;
+        }
+        unicodeCache = chars.toString().toCharArray();
+      }
+    }
+    return unicodeCache == null ? toPsf1Unicode() : unicodeCache;
+  }
+
+  /**
+   * Adds a glyph after the last one, its rows are cached on first use.
+   * @param glyph byteSize bytes
+   * @return index of the glyph
+   */
+  synchronized int append(byte[] glyph) {
+    testNotFrozen();
+    byte[] bitmap = getBitmap();
+    int i = length;
+    int capacity = bitmap.length / byteSize;
+    if (i >= capacity) {
+      capacity = Math.max(capacity * 2, 0x10);
+      this.bitmap = bitmap = Arrays.copyOf(bitmap, capacity * byteSize);
+    }
+    System.arraycopy(glyph, 0, bitmap, i * byteSize, byteSize);
+    int rowSize = height * cacheStride;
+    boolean[] uncached = this.uncached;
+    if (uncached == null) {
+      uncached = new boolean[capacity];
+      if (bitmapCache.length < i * rowSize) { // never cached
+        Arrays.fill(uncached, 0, i, true);
+        pending = i;
+      }
+    } else if (uncached.length < capacity) uncached = Arrays.copyOf(uncached, capacity);
+    if (bitmapCache.length < capacity * rowSize) bitmapCache = Arrays.copyOf(bitmapCache, capacity * rowSize);
+    uncached[i] = true;
+    pending++;
+    this.uncached = uncached;
+    length = i + 1;
+    return i;
+  }
+
+  /**
+   * Fills the rows of a lazily cached glyph. Callers check uncached, which becomes null
+   * once every glyph is cached and from then on publishes the whole cache.
+   */
+  private synchronized void cacheGlyph(int i) {
+    boolean[] uncached = this.uncached;
+    if (uncached == null || !uncached[i]) return;
+    ByteBuffer mapped = this.mapped;
+    byte[] bitmap = this.bitmap;
     int bytesPerLine = this.byteSize / this.height;
-    for (int i = 0; i < cacheSize; i++) {
-      for (int x = Math.min(bytesPerLine, 4), j = i * bytesPerLine, s = 24; x > 0; x--, j++, s -= 8) {
-        this.bitmapCache[i] |= (this.bitmap[j] & 0xFF) << s;
+    int stride = this.cacheStride;
+    for (int y = 0, j = i * this.byteSize, k = i * this.height * stride; y < this.height; y++) {
+      for (int x = 0; x < bytesPerLine; k++) {
+        int word = 0;
+        for (int s = 24; s >= 0 && x < bytesPerLine; s -= 8, x++, j++) {
+          word |= ((mapped == null ? bitmap[j] : mapped.get(j)) & 0xFF) << s;
+        }
+        this.bitmapCache[k] = word;
       }
     }
+    uncached[i] = false;
+    if (--pending == 0) this.uncached = null;
   }
 
   public static BitmapFont fromPsf(byte[] b) {
     if (b.length > 2 && b[0] == 0x1F && b[1] == (byte) 0x8B) b = gunzip(b);
-    if (b.length > 2 && b[0] == 0x36 && b[1] == 0x04) return fromPsf1(b);
-    if (b.length > 4 && b[0] == 0x72 && b[1] == (byte) 0xB5 && b[2] == 0x4A && b[3] == (byte) 0x86)
-      return fromPsf2(b);
-    b = Arrays.copyOf(b, 4);
-    throw new IllegalStateException(String.format("PSF header %02X %02X %02X %02X", b[0], b[1], b[2], b[3]));
+    BitmapFont font = readPsf(ByteBuffer.wrap(b));
+    font.cacheBitmap();
+    return font;
   }
 
   public static BitmapFont fromImage(BufferedImage image,
@@ -249,22 +569,37 @@ public class BitmapFont {
       int nw, int nh,
       int dw, int dh,
       int ow, int oh, Predicate<Integer> pixel) {
+    return fromImageRgb(image, width, height, nw, nh, dw, dh, ow, oh, pixel::test);
+  }
+
+  /**
+   * Reads the image by rows of pixels, the rows of glyph cells are processed in parallel.
+   * The predicate takes the unboxed argb of getRGB().
+   */
+  public static BitmapFont fromImageRgb(BufferedImage image,
+      int width, int height,
+      int nw, int nh,
+      int dw, int dh,
+      int ow, int oh, IntPredicate pixel) {
     BitmapFont font = new BitmapFont(width, height);
     byte[] bytes = font.bitmap;
     int byteSize = font.byteSize;
     int byteSizeW = byteSize / font.height;
     int my = height + Math.min(dh, 0);
     int mx = width + Math.min(dw, 0);
-    for (int ny = 0; ny < nh; ny++) {
-      for (int nx = 0; nx < nw; nx++) {
-        for (int y = 0; y < my; y++) {
-          for (int x = 0; x < mx; x++) {
-            int rgb = image.getRGB((width + dw) * nx + x + ow, (height + dh) * ny + y + oh);
-            if (pixel.test(rgb)) bytes[(ny * nw + nx) * byteSize + y * byteSizeW + x / 8] |= 1 << (7 - x % 8);
+    int rowWidth = (width + dw) * (nw - 1) + mx;
+    IntStream.range(0, nh).parallel().forEach(ny -> {
+      int[] row = new int[rowWidth];
+      for (int y = 0; y < my; y++) {
+        image.getRGB(ow, (height + dh) * ny + y + oh, rowWidth, 1, row, 0, rowWidth);
+        for (int nx = 0; nx < nw; nx++) {
+          int i = (ny * nw + nx) * byteSize + y * byteSizeW;
+          for (int x = 0, r = (width + dw) * nx; x < mx; x++, r++) {
+            if (pixel.test(row[r])) bytes[i + x / 8] |= 1 << (7 - x % 8);
           }
         }
       }
-    }
+    });
     font.cacheBitmap();
     return font;
   }
@@ -273,7 +608,7 @@ public class BitmapFont {
       int nw, int nh, int dw, int dh, int ow, int oh) {
     int b = image.getRGB(image.getWidth() - 1, image.getHeight() - 1);
     // TODO: 2025-03-20 improve the predicate function
-    return fromImage(image, width, height, nw, nh, dw, dh, ow, oh, p -> p != b);
+    return fromImageRgb(image, width, height, nw, nh, dw, dh, ow, oh, p -> p != b);
   }
 
   public static BitmapFont fromImage(BufferedImage image, int nw, int nh) {
@@ -297,52 +632,306 @@ public class BitmapFont {
   public void drawString(String s, int x, int y, BufferedImage image, int rgb, int... bgColor) {
     int w = image.getWidth();
     int h = image.getHeight();
-    char[] chars = s.toCharArray();
+    int[] chars = s.codePoints().toArray();
     if (x >= w || y >= h || -x >= chars.length * this.width || -y >= this.height) return;
+    Blitter blitter = blitter(image);
+    boolean bg = bgColor.length > 0;
+    int color = blitter.color(rgb);
+    int bgc = bg ? blitter.color(bgColor[0]) : 0;
     int xn = x; // next
-    for (char c : chars) {
+    for (int c : chars) {
       x = xn;
       xn = x + this.width;
       if (xn <= 0) continue;
       if (x >= w) break;
-      drawChar(getCode(c), x, y, image, rgb, bgColor);
+      blitter.drawChar(getCode(c), x, y, color, bgc, bg);
     }
   }
 
-  private void drawChar(int i, int x, int y, BufferedImage image, int rgb, int... bgColor) {
-    boolean bg = bgColor.length > 0;
-    int bgc = bg ? bgColor[0] : 0;
-    i *= this.byteSize;
-    int yn = Math.min(y + this.height, image.getHeight()); // next
-    if (y < 0) {
-      i += this.byteSize / this.height * -y;
-      y = 0;
+  /**
+   * The blitter of the last image, selected by its raster. Shared frozen fonts don't keep it,
+   * it would hold that image for the whole process.
+   */
+  private Blitter blitter(BufferedImage image) {
+    Blitter blitter = this.blitter;
+    if (blitter != null && blitter.image == image) return blitter;
+    WritableRaster raster = image.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    DataBuffer buffer = raster.getDataBuffer();
+    if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+        || buffer.getNumBanks() != 1) {
+      blitter = new RgbBlitter(image);
+    } else if (buffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel) {
+      blitter = new IntBlitter(image, ((DataBufferInt) buffer).getData(), buffer.getOffset(),
+          ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride());
+    } else if (buffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel
+        && sampleModel.getNumBands() == 1 && ((ComponentSampleModel) sampleModel).getPixelStride() == 1) {
+      ComponentSampleModel model = (ComponentSampleModel) sampleModel;
+      blitter = new ByteBlitter(image, ((DataBufferByte) buffer).getData(),
+          buffer.getOffset() + model.getOffset(0, 0), model.getScanlineStride());
+    } else if (buffer instanceof DataBufferByte && sampleModel instanceof MultiPixelPackedSampleModel
+        && ((MultiPixelPackedSampleModel) sampleModel).getPixelBitStride() == 1) {
+      MultiPixelPackedSampleModel model = (MultiPixelPackedSampleModel) sampleModel;
+      blitter = new BinaryBlitter(image, ((DataBufferByte) buffer).getData(),
+          buffer.getOffset() * 8 + model.getDataBitOffset(), model.getScanlineStride());
+    } else blitter = new RgbBlitter(image);
+    if (!frozen) this.blitter = blitter;
+    return blitter;
+  }
+
+  /**
+   * Draws clipped chars straight into the data array of an image.
+   */
+  private abstract class Blitter {
+    final BufferedImage image;
+    final int w;
+    final int h;
+
+    Blitter(BufferedImage image) {
+      this.image = image;
+      this.w = image.getWidth();
+      this.h = image.getHeight();
     }
-    int w = image.getWidth();
-    byte b = 0;
-    for (; y < yn; y++) {
-      for (int xi = 0, xx = x; xi < this.width; xi++, xx++, b <<= 1) {
-        if ((xi & 7) == 0) b = this.bitmap[i++];
-        if (xx < 0 || xx >= w) continue;
-        if (b < 0) image.setRGB(xx, y, rgb); else if (bg) image.setRGB(xx, y, bgc);
+
+    /**
+     * @return color for drawChar, the data element of the pixel
+     */
+    int color(int rgb) {
+      Object pixel = image.getColorModel().getDataElements(rgb, null);
+      return pixel instanceof byte[] ? ((byte[]) pixel)[0] & 0xFF : ((int[]) pixel)[0];
+    }
+
+    abstract void drawChar(int i, int x, int y, int color, int bgColor, boolean bg);
+  }
+
+  /**
+   * Any other image, pixel by pixel with setRGB.
+   */
+  private class RgbBlitter extends Blitter {
+    RgbBlitter(BufferedImage image) {
+      super(image);
+    }
+
+    @Override
+    int color(int rgb) {
+      return rgb;
+    }
+
+    @Override
+    void drawChar(int i, int x, int y, int color, int bgColor, boolean bg) {
+      byte[] bitmap = getBitmap();
+      i *= byteSize;
+      int yn = Math.min(y + height, h); // next
+      if (y < 0) {
+        i += byteSize / height * -y;
+        y = 0;
+      }
+      byte b = 0;
+      for (; y < yn; y++) {
+        for (int xi = 0, xx = x; xi < width; xi++, xx++, b <<= 1) {
+          if ((xi & 7) == 0) b = bitmap[i++];
+          if (xx < 0 || xx >= w) continue;
+          if (b < 0) image.setRGB(xx, y, color); else if (bg) image.setRGB(xx, y, bgColor);
+        }
+      }
+    }
+  }
+
+  /**
+   * TYPE_INT_RGB and other images of one int per pixel.
+   */
+  private class IntBlitter extends Blitter {
+    final int[] data;
+    final int offset;
+    final int stride;
+
+    IntBlitter(BufferedImage image, int[] data, int offset, int stride) {
+      super(image);
+      this.data = data;
+      this.offset = offset;
+      this.stride = stride;
+    }
+
+    @Override
+    void drawChar(int i, int x, int y, int color, int bgColor, boolean bg) {
+      byte[] bitmap = getBitmap();
+      int bytesPerLine = byteSize / height;
+      int x0 = Math.max(-x, 0);
+      int x1 = Math.min(w - x, width);
+      int y1 = Math.min(h - y, height);
+      for (int gy = Math.max(-y, 0); gy < y1; gy++) {
+        int g = i * byteSize + gy * bytesPerLine;
+        int p = offset + (y + gy) * stride + x;
+        for (int gx = x0; gx < x1; gx++) {
+          if ((bitmap[g + (gx >> 3)] << (gx & 7) & 0x80) != 0) data[p + gx] = color;
+          else if (bg) data[p + gx] = bgColor;
+        }
+      }
+    }
+  }
+
+  /**
+   * TYPE_BYTE_INDEXED, TYPE_BYTE_GRAY, one byte per pixel.
+   */
+  private class ByteBlitter extends Blitter {
+    final byte[] data;
+    final int offset;
+    final int stride;
+
+    ByteBlitter(BufferedImage image, byte[] data, int offset, int stride) {
+      super(image);
+      this.data = data;
+      this.offset = offset;
+      this.stride = stride;
+    }
+
+    @Override
+    void drawChar(int i, int x, int y, int color, int bgColor, boolean bg) {
+      byte[] bitmap = getBitmap();
+      int bytesPerLine = byteSize / height;
+      int x0 = Math.max(-x, 0);
+      int x1 = Math.min(w - x, width);
+      int y1 = Math.min(h - y, height);
+      for (int gy = Math.max(-y, 0); gy < y1; gy++) {
+        int g = i * byteSize + gy * bytesPerLine;
+        int p = offset + (y + gy) * stride + x;
+        for (int gx = x0; gx < x1; gx++) {
+          if ((bitmap[g + (gx >> 3)] << (gx & 7) & 0x80) != 0) data[p + gx] = (byte) color;
+          else if (bg) data[p + gx] = (byte) bgColor;
+        }
+      }
+    }
+  }
+
+  /**
+   * TYPE_BYTE_BINARY of 1 bit per pixel. Glyph rows are taken 56 pixels at a time as a long,
+   * shifted to the pixel bit position, then set and cleared in up to 8 bytes with masks.
+   */
+  private class BinaryBlitter extends Blitter {
+    final byte[] data;
+    final int bitOffset;
+    final int stride;
+
+    BinaryBlitter(BufferedImage image, byte[] data, int bitOffset, int stride) {
+      super(image);
+      this.data = data;
+      this.bitOffset = bitOffset;
+      this.stride = stride;
+    }
+
+    @Override
+    void drawChar(int i, int x, int y, int color, int bgColor, boolean bg) {
+      byte[] bitmap = getBitmap();
+      int bytesPerLine = byteSize / height;
+      int y1 = Math.min(h - y, height);
+      for (int gy = Math.max(-y, 0); gy < y1; gy++) {
+        int g = i * byteSize + gy * bytesPerLine;
+        int row = (y + gy) * stride * 8 + bitOffset;
+        for (int cx = 0; cx < width; cx += 56, g += 7) {
+          int c0 = Math.max(-x - cx, 0); // visible columns of the chunk
+          int c1 = Math.min(Math.min(width - cx, w - x - cx), 56);
+          if (c0 >= c1) continue;
+          long bits = 0;
+          for (int k = 0, n = Math.min(7, bytesPerLine - cx / 8); k < n; k++) {
+            bits |= (long) (bitmap[g + k] & 0xFF) << 56 - k * 8;
+          }
+          long mask = -1L >>> c0 & ~(-1L >>> c1);
+          long fg = bits & mask;
+          long set = color == 0 ? 0 : fg;
+          long clear = color == 0 ? fg : 0;
+          if (bg) {
+            if (bgColor == 0) clear |= ~bits & mask; else set |= ~bits & mask;
+          }
+          int d = row + x + cx;
+          int s = d & 7;
+          mask >>>= s;
+          set >>>= s;
+          clear >>>= s;
+          for (int j = 0, p = d >> 3; j < 8; j++, p++) {
+            int shift = 56 - j * 8;
+            if ((mask >>> shift & 0xFF) == 0) continue;
+            data[p] = (byte) (data[p] & ~(clear >>> shift) | set >>> shift);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Draws chars scaled by integers with transparent background. The glyph rows are expanded
+   * on the fly, the font is not multiplied.
+   */
+  public void drawStringScaled(String s, int x, int y, BufferedImage image, int rgb, int scaleX, int scaleY) {
+    drawScaled(s, x, y, image, rgb, null, scaleX, scaleY);
+  }
+
+  public void drawStringScaled(String s, int x, int y, BufferedImage image, int rgb, int bgRgb,
+      int scaleX, int scaleY) {
+    drawScaled(s, x, y, image, rgb, bgRgb, scaleX, scaleY);
+  }
+
+  private void drawScaled(String s, int x, int y, BufferedImage image, int rgb, Integer bgRgb,
+      int scaleX, int scaleY) {
+    if (scaleX < 1 || scaleY < 1) throw new IllegalArgumentException("scale");
+    int[] chars = s.codePoints().toArray();
+    int x0 = Math.max(x, 0);
+    int x1 = Math.min(x + chars.length * this.width * scaleX, image.getWidth());
+    int y0 = Math.max(y, 0);
+    int y1 = Math.min(y + this.height * scaleY, image.getHeight());
+    if (x0 >= x1 || y0 >= y1) return;
+    byte[] bitmap = getBitmap();
+    int lw = x1 - x0;
+    // row lut, bitmap offset and bit of each image column in the glyph row 0
+    int[] offset = new int[lw];
+    int[] mask = new int[lw];
+    for (int i = 0; i < lw; i++) {
+      int sx = (x0 + i - x) / scaleX;
+      int gx = sx % this.width;
+      offset[i] = getCode(chars[sx / this.width]) * this.byteSize + (gx >> 3);
+      mask[i] = 0x80 >> (gx & 7);
+    }
+    WritableRaster raster = image.getRaster();
+    ColorModel colorModel = image.getColorModel();
+    Object fg = colorModel.getDataElements(rgb, null);
+    Object bg = bgRgb == null ? null : colorModel.getDataElements(bgRgb, null);
+    int n = raster.getNumDataElements();
+    int bytesPerLine = this.byteSize / this.height;
+    Object line = null;
+    for (int sy = (y0 - y) / scaleY, yy = y0; yy < y1; sy++) {
+      int yn = Math.min(y + (sy + 1) * scaleY, y1); // next
+      int row = sy * bytesPerLine;
+      if (bg == null) {
+        for (; yy < yn; yy++) { // keeps the image under the background
+          line = raster.getDataElements(x0, yy, lw, 1, line);
+          for (int i = 0; i < lw; i++) {
+            if ((bitmap[offset[i] + row] & mask[i]) != 0) System.arraycopy(fg, 0, line, i * n, n);
+          }
+          raster.setDataElements(x0, yy, lw, 1, line);
+        }
+      } else {
+        if (line == null) line = raster.getDataElements(x0, yy, lw, 1, null);
+        for (int i = 0; i < lw; i++) {
+          System.arraycopy((bitmap[offset[i] + row] & mask[i]) != 0 ? fg : bg, 0, line, i * n, n);
+        }
+        for (; yy < yn; yy++) raster.setDataElements(x0, yy, lw, 1, line);
       }
     }
   }
 
   /**
-   * Draws chars without clipping, width limit 32 pixels,
+   * Draws chars without clipping,
    * doesn't support BufferedImage.TYPE_BYTE_BINARY with more than 1 pixel per byte.
    */
   public void drawStringSimple(String s, int x, int y, BufferedImage image, int color, int... bgColor) {
     int w = image.getWidth();
     int h = image.getHeight();
     final int ww = w - this.width;
-    char[] chars = s.toCharArray();
+    int[] chars = s.codePoints().toArray();
     if (x > ww || y > h - this.height || -x > (chars.length - 1) * this.width || y < 0) return;
     DataBuffer buffer = image.getRaster().getDataBuffer();
     int xn = x; // next
     y *= w;
-    for (char c : chars) {
+    for (int c : chars) {
       x = xn;
       xn += this.width;
       if (x < 0) continue;
@@ -359,11 +948,15 @@ public class BitmapFont {
   public void drawCharSimple(int i, int xy, int ww, DataBuffer buffer, int color, int... bgColor) {
     boolean bg = bgColor.length > 0;
     int bgc = bg ? bgColor[0] : 0;
-    i *= this.height;
+    if (this.uncached != null) cacheGlyph(i);
+    int[] cache = this.bitmapCache;
+    i *= this.height * this.cacheStride;
     for (int y = 0; y < this.height; y++, xy += ww) {
-      int b = this.bitmapCache[i++];
-      for (int x = 0; x < this.width; x++, xy++, b <<= 1) {
-        if (b < 0) buffer.setElem(xy, color); else if (bg) buffer.setElem(xy, bgc);
+      for (int x = 0; x < this.width; ) {
+        int b = cache[i++];
+        for (int xn = Math.min(x + 32, this.width); x < xn; x++, xy++, b <<= 1) {
+          if (b < 0) buffer.setElem(xy, color); else if (bg) buffer.setElem(xy, bgc);
+        }
       }
     }
   }
@@ -372,8 +965,14 @@ public class BitmapFont {
     return get(c) >= 0;
   }
 
+  public boolean canDisplay(int codePoint) {
+    return get(codePoint) >= 0;
+  }
+
   public void multiply(int mw, int mh) {
+    testNotFrozen();
     int byteSize = (width * mw + 7) / 8;
+    byte[] source = getBitmap();
     byte[] bitmap = new byte[length * height * mh * byteSize];
     for (int c = 0, bmi = 0, bmo = 0; c < length; c++) {
       for (int y = 0; y < height; y++) {
@@ -381,7 +980,7 @@ public class BitmapFont {
         byte b = 0;
         for (int x = 0, mx = 0; x < width; x++) {
           int x0 = x & 7;
-          if (x0 == 0) b = this.bitmap[bmi++];
+          if (x0 == 0) b = source[bmi++];
           boolean on = (b & (1 << 7 - x0)) != 0;
           for (int i = 0; i < mw; i++, mx++) bity[mx >> 3] |= (on ? 1 : 0) << 7 - (mx & 7);
         }
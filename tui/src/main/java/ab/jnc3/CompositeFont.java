@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Chain of fonts, a code point is displayed by the first font that has it. Each code point is resolved
+ * once into the glyph index of this font: glyphs of the first font keep their indices, glyphs of
+ * the others are scaled to the cell size of the first one and appended. Only the resolved code points
+ * are in the unicode index, and the notdef glyph is the first box of the chain.
+ */
+public class CompositeFont extends BitmapFont {
+
+  private final BitmapFont[] fonts;
+  private final int first; // glyphs of the first font
+  private final BitSet missing = new BitSet(); // code points none of the fonts have
+  private int[] sources = new int[0]; // font id << 16 | glyph index of the appended glyphs
+
+  public CompositeFont(BitmapFont... fonts) {
+    super(fonts[0].width, fonts[0].height);
+    this.fonts = fonts.clone();
+    BitmapFont font = fonts[0];
+    Arrays.fill(unicode, null); // no default ascii
+    length = first = font.length;
+    bitmap = Arrays.copyOf(font.getBitmap(), font.length * font.byteSize);
+    cacheBitmap();
+    notdef = font.notdef;
+  }
+
+  @Override
+  public int get(char c) {
+    int i = super.get(c);
+    return i >= 0 || Character.isSurrogate(c) ? i : resolve(c);
+  }
+
+  @Override
+  public int get(int codePoint) {
+    int i = super.get(codePoint);
+    return i >= 0 || !Character.isValidCodePoint(codePoint) ? i : resolve(codePoint);
+  }
+
+  /**
+   * @return font id << 16 | glyph index in that font
+   */
+  public synchronized int getSource(int i) {
+    return i < first ? i : sources[i - first];
+  }
+
+  private synchronized int resolve(int codePoint) {
+    if (fonts == null) return -1; // the super constructor
+    int i = super.get(codePoint);
+    if (i >= 0 || missing.get(codePoint)) return i;
+    for (int id = 0; id < fonts.length; id++) {
+      BitmapFont font = fonts[id];
+      int glyph = font.get(codePoint);
+      if (glyph < 0) continue;
+      i = id == 0 ? glyph : append(id, glyph);
+      put(codePoint, i);
+      return i;
+    }
+    missing.set(codePoint);
+    return -1;
+  }
+
+  private int append(int id, int glyph) {
+    BitmapFont font = fonts[id];
+    byte[] fontBitmap = font.getBitmap();
+    byte[] cell = new byte[byteSize];
+    int bytesPerLine = byteSize / height;
+    int fontBytesPerLine = font.byteSize / font.height;
+    for (int y = 0; y < height; y++) { // nearest neighbour
+      int j = glyph * font.byteSize + y * font.height / height * fontBytesPerLine;
+      for (int x = 0; x < width; x++) {
+        int fx = x * font.width / width;
+        if ((fontBitmap[j + (fx >> 3)] << (fx & 7) & 0x80) != 0) cell[y * bytesPerLine + (x >> 3)] |= 0x80 >> (x & 7);
+      }
+    }
+    int i = append(cell);
+    int n = i - first;
+    if (n >= sources.length) sources = Arrays.copyOf(sources, Math.max(sources.length * 2, 0x10));
+    sources[n] = id << 16 | glyph;
+    return i;
+  }
+
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Converts directories of fonts between PSF1, PSF2, gzipped PSF2, GRUB PF2 and the legacy .fnt layout
+ * of 256 IBM437 glyphs 8 pixels wide. Files are read once and converted in parallel.
+ * Usage: FontConverter source_dir target_dir psf|psfu|psfu.gz|pf2|fnt
+ */
+public class FontConverter {
+
+  public enum Format {
+    PSF1(".psf"), PSF2(".psfu"), PSF2_GZIP(".psfu.gz"), PF2(".pf2"), FNT(".fnt");
+
+    public final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    public static Format fromExtension(String extension) {
+      for (Format format : values()) if (format.extension.equals('.' + extension)) return format;
+      throw new IllegalArgumentException(extension);
+    }
+  }
+
+  /**
+   * Conversion of one file, failed if exception is not null.
+   */
+  public static class Result {
+    public final Path path;
+    public final long bytesRead;
+    public final long bytesWritten;
+    public final long nanos;
+    public final Exception exception;
+
+    public Result(Path path, long bytesRead, long bytesWritten, long nanos, Exception exception) {
+      this.path = path;
+      this.bytesRead = bytesRead;
+      this.bytesWritten = bytesWritten;
+      this.nanos = nanos;
+      this.exception = exception;
+    }
+
+    @Override
+    public String toString() {
+      if (exception != null) return String.format("%s %s", path.getFileName(), exception);
+      return String.format("%s %d -> %d bytes %.3f ms %.1f MB/s", path.getFileName(), bytesRead, bytesWritten,
+          nanos / 1e6, bytesRead * 1e3 / Math.max(nanos, 1));
+    }
+  }
+
+  private static final Charset IBM437 = Charset.forName("IBM437");
+  private final ForkJoinPool pool;
+
+  public FontConverter(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  public FontConverter() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Detects the format by the header, files without a known header are the legacy .fnt layout.
+   */
+  public static BitmapFont read(byte[] b) {
+    if (b.length > 2 && (b[0] == 0x1F && b[1] == (byte) 0x8B || b[0] == 0x36 && b[1] == 0x04
+        || b[0] == 0x72 && b[1] == (byte) 0xB5)) return BitmapFont.fromPsf(b);
+    if (b.length > 12 && new String(b, 0, 12, StandardCharsets.US_ASCII).equals("FILE\0\0\0\4PFF2")) return fromPf2(b);
+    return fromFnt(b);
+  }
+
+  public static void write(BitmapFont font, Format format, WritableByteChannel channel) throws IOException {
+    switch (format) {
+      case PSF1:
+        byte[] psf = font.toPsf();
+        if (psf[0] != 0x36) throw new IllegalArgumentException("not a PSF1 font");
+        writeFully(channel, ByteBuffer.wrap(psf));
+        break;
+      case PSF2: writeFully(channel, ByteBuffer.wrap(font.toPsf2())); break;
+      case PSF2_GZIP: writeFully(channel, gzip(font.toPsf2())); break;
+      case PF2: writeFully(channel, toPf2(font)); break;
+      case FNT: writeFully(channel, ByteBuffer.wrap(toFnt(font))); break;
+    }
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) channel.write(buffer);
+  }
+
+  /**
+   * Gzip member of the same header as GZIPOutputStream, the deflater is ended right away
+   * instead of holding its native memory until it is collected.
+   */
+  private static ByteBuffer gzip(byte[] b) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      deflater.setInput(b);
+      deflater.finish();
+      byte[] out = new byte[b.length / 2 + 0x100];
+      out[0] = 0x1F;
+      out[1] = (byte) 0x8B;
+      out[2] = Deflater.DEFLATED;
+      int n = 10;
+      while (!deflater.finished()) {
+        if (n == out.length) out = Arrays.copyOf(out, out.length * 2);
+        n += deflater.deflate(out, n, out.length - n);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(b);
+      return ByteBuffer.allocate(n + 8).order(ByteOrder.LITTLE_ENDIAN)
+          .put(out, 0, n).putInt((int) crc.getValue()).putInt(b.length).flip();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  public static BitmapFont fromFnt(byte[] b) {
+    if (b.length == 0 || b.length % 0x100 != 0) throw new IllegalStateException("FNT file size");
+    BitmapFont font = new BitmapFont(8, b.length / 0x100);
+    font.bitmap = b.clone();
+    String charset = ibm437();
+    for (int i = 0; i < 0x100; i++) font.put(charset.charAt(i), i);
+    font.cacheBitmap();
+    return font;
+  }
+
+  public static byte[] toFnt(BitmapFont font) {
+    if (font.width > 8) throw new IllegalArgumentException("FNT width " + font.width);
+    byte[] b = new byte[font.height * 0x100];
+    String charset = ibm437();
+    for (int i = 0; i < 0x100; i++) {
+      int glyph = font.get(charset.charAt(i));
+      if (glyph >= 0) System.arraycopy(font.getBitmap(), glyph * font.byteSize, b, i * font.height, font.height);
+    }
+    return b;
+  }
+
+  private static String ibm437() {
+    byte[] bytes = new byte[0x100];
+    for (int i = 0; i < 0x100; i++) bytes[i] = (byte) i;
+    return new String(bytes, IBM437);
+  }
+
+  /**
+   * PFF2 bitmap font, sections of 4 letters and big endian length.
+   * http://grub.gibibit.com/New_font_format
+   */
+  public static BitmapFont fromPf2(byte[] b) {
+    ByteBuffer buffer = ByteBuffer.wrap(b);
+    int width = 0;
+    int height = 0;
+    int ascent = 0;
+    int[] chix = null;
+    while (true) {
+      byte[] name = new byte[4];
+      buffer.get(name);
+      String section = new String(name, StandardCharsets.US_ASCII);
+      int length = buffer.getInt();
+      if (section.equals("DATA")) break;
+      int next = buffer.position() + length;
+      switch (section) {
+        case "MAXW": width = buffer.getShort(); break;
+        case "MAXH": height = buffer.getShort(); break;
+        case "ASCE": ascent = buffer.getShort(); break;
+        case "CHIX":
+          chix = new int[length / 9 * 2];
+          for (int i = 0; i < chix.length; i += 2) {
+            chix[i] = buffer.getInt();
+            buffer.get(); // flags
+            chix[i + 1] = buffer.getInt();
+          }
+          break;
+      }
+      buffer.position(next);
+    }
+    if (chix == null || width <= 0 || height <= 0) throw new IllegalStateException("PF2 header");
+    BitmapFont font = new BitmapFont(width, height);
+    Arrays.fill(font.unicode, null); // no default ascii
+    font.length = chix.length / 2;
+    font.bitmap = new byte[font.length * font.byteSize];
+    int bytesPerLine = font.byteSize / height;
+    for (int i = 0; i < font.length; i++) {
+      buffer.position(chix[i * 2 + 1]);
+      int w = buffer.getShort();
+      int h = buffer.getShort();
+      int xOffset = buffer.getShort();
+      int yOffset = buffer.getShort();
+      buffer.getShort(); // device width
+      int yo = ascent - yOffset - h;
+      int bit = 0;
+      int p = buffer.position();
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++, bit++) {
+          int xx = x + xOffset;
+          int yy = y + yo;
+          if ((b[p + (bit >> 3)] << (bit & 7) & 0x80) == 0 || xx < 0 || xx >= width || yy < 0 || yy >= height) continue;
+          font.bitmap[i * font.byteSize + yy * bytesPerLine + (xx >> 3)] |= 0x80 >> (xx & 7);
+        }
+      }
+      font.put(chix[i * 2], i);
+    }
+    font.cacheBitmap();
+    return font;
+  }
+
+  public static ByteBuffer toPf2(BitmapFont font) {
+    int[] codePoints = font.codePoints().toArray();
+    int n = codePoints.length;
+    int descent = font.height / 8;
+    String name = "Fixed Regular " + font.height;
+    int glyphBytes = 10 + (font.width * font.height + 7) / 8;
+    ByteBuffer buffer = ByteBuffer.allocate(0x100 + name.length() + n * (9 + glyphBytes));
+    buffer.put("FILE".getBytes(StandardCharsets.US_ASCII)).putInt(4).put("PFF2".getBytes(StandardCharsets.US_ASCII));
+    putString(buffer, "NAME", name);
+    putString(buffer, "FAMI", "Fixed");
+    putString(buffer, "WEIG", "normal");
+    putString(buffer, "SLAN", "normal");
+    putShort(buffer, "PTSZ", font.height);
+    putShort(buffer, "MAXW", font.width);
+    putShort(buffer, "MAXH", font.height);
+    putShort(buffer, "ASCE", font.height - descent);
+    putShort(buffer, "DESC", descent);
+    buffer.put("CHIX".getBytes(StandardCharsets.US_ASCII)).putInt(n * 9);
+    int offset = buffer.position() + n * 9 + 8;
+    for (int codePoint : codePoints) {
+      buffer.putInt(codePoint).put((byte) 0).putInt(offset);
+      offset += glyphBytes;
+    }
+    buffer.put("DATA".getBytes(StandardCharsets.US_ASCII)).putInt(-1);
+    int bytesPerLine = font.byteSize / font.height;
+    byte[] bitmap = font.getBitmap();
+    for (int codePoint : codePoints) {
+      int i = font.get(codePoint) * font.byteSize;
+      buffer.putShort((short) font.width).putShort((short) font.height)
+          .putShort((short) 0).putShort((short) -descent).putShort((short) font.width);
+      int bits = 0;
+      int bit = 0;
+      for (int y = 0; y < font.height; y++) {
+        for (int x = 0; x < font.width; x++) {
+          bits = bits << 1 | (bitmap[i + y * bytesPerLine + (x >> 3)] << (x & 7) >> 7 & 1);
+          if (++bit == 8) {
+            buffer.put((byte) bits);
+            bit = 0;
+          }
+        }
+      }
+      if (bit > 0) buffer.put((byte) (bits << 8 - bit));
+    }
+    return buffer.flip();
+  }
+
+  private static void putString(ByteBuffer buffer, String section, String s) {
+    buffer.put(section.getBytes(StandardCharsets.US_ASCII)).putInt(s.length() + 1)
+        .put(s.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+  }
+
+  private static void putShort(ByteBuffer buffer, String section, int s) {
+    buffer.put(section.getBytes(StandardCharsets.US_ASCII)).putInt(2).putShort((short) s);
+  }
+
+  /**
+   * File name without the font extension, compressed ones like x.psf.gz included.
+   */
+  static String baseName(String name) {
+    if (name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+    for (String extension : new String[]{".psf", ".psfu", ".pf2", ".fnt"}) {
+      if (name.endsWith(extension)) return name.substring(0, name.length() - extension.length());
+    }
+    return name;
+  }
+
+  /**
+   * Converts one file into the target directory, replacing the font extension.
+   */
+  public Result convertFile(Path source, Path targetDir, Format format) {
+    long time = System.nanoTime();
+    long bytesRead = 0;
+    Path target = targetDir.resolve(baseName(source.getFileName().toString()) + format.extension);
+    try {
+      byte[] b = Files.readAllBytes(source);
+      bytesRead = b.length;
+      BitmapFont font = read(b);
+      try (FileChannel channel = FileChannel.open(target,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        write(font, format, channel);
+        return new Result(source, bytesRead, channel.size(), System.nanoTime() - time, null);
+      }
+    } catch (IOException | RuntimeException e) {
+      return new Result(source, bytesRead, 0, System.nanoTime() - time, e);
+    }
+  }
+
+  /**
+   * Converts the regular files of the source directory on the fork-join pool.
+   */
+  public List<Result> convert(Path sourceDir, Path targetDir, Format format) throws IOException {
+    List<Path> paths;
+    try (Stream<Path> list = Files.list(sourceDir)) {
+      paths = list.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    Files.createDirectories(targetDir);
+    try {
+      return pool.submit(() -> paths.parallelStream()
+          .map(path -> convertFile(path, targetDir, format)).collect(Collectors.toList())).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3) {
+      System.err.println("Usage: FontConverter source_dir target_dir psf|psfu|psfu.gz|pf2|fnt");
+      System.exit(1);
+    }
+    long time = System.nanoTime();
+    List<Result> results = new FontConverter().convert(Path.of(args[0]), Path.of(args[1]),
+        Format.fromExtension(args[2]));
+    time = System.nanoTime() - time;
+    results.forEach(System.out::println);
+    long bytes = results.stream().mapToLong(result -> result.bytesRead).sum();
+    System.out.printf("%d files, %d failed, %d bytes %.3f ms %.1f MB/s%n", results.size(),
+        results.stream().filter(result -> result.exception != null).count(), bytes, time / 1e6, bytes * 1e3 / time);
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Glyphs already painted in foreground and background colors, drawing a cached glyph is
+ * one array copy per scanline. Colors are the values of the data buffer elements,
+ * palette indices for indexed images. The least recently used glyphs are evicted when
+ * the cache grows over the size limit.
+ */
+public class GlyphCache {
+
+  private static final int OVERHEAD = 0x40; // map entry, key and array header
+  private final BitmapFont font;
+  private final long maxBytes;
+  private long bytes;
+  private final LinkedHashMap<Key, Object> tiles = new LinkedHashMap<>(0x100, 0.75f, true);
+  private final Key probe = new Key(); // lookups without allocation
+
+  /**
+   * Glyph index and tile type, both colors in full.
+   */
+  private static final class Key {
+    int glyph;
+    long colors;
+
+    Key set(int glyph, long colors) {
+      this.glyph = glyph;
+      this.colors = colors;
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).glyph == glyph && ((Key) o).colors == colors;
+    }
+
+    @Override
+    public int hashCode() {
+      return glyph * 31 + Long.hashCode(colors * 0x9E3779B97F4A7C15L);
+    }
+  }
+
+  public GlyphCache(BitmapFont font, long maxBytes) {
+    this.font = font;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return approximate memory used by the cached glyphs
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  public int size() {
+    return tiles.size();
+  }
+
+  /**
+   * Call after changing the font bitmap.
+   */
+  public void clear() {
+    tiles.clear();
+    bytes = 0;
+  }
+
+  private Object tile(int i, int fg, int bg, boolean ints) {
+    int glyph = i << 1 | (ints ? 1 : 0);
+    long colors = (long) fg << 32 | bg & 0xFFFF_FFFFL;
+    Object tile = tiles.get(probe.set(glyph, colors));
+    if (tile != null) return tile;
+    int w = font.width;
+    int h = font.height;
+    int bytesPerLine = font.byteSize / h;
+    byte[] bitmap = font.getBitmap();
+    int[] intTile = ints ? new int[w * h] : null;
+    byte[] byteTile = ints ? null : new byte[w * h];
+    for (int y = 0, p = 0, j = i * font.byteSize; y < h; y++, j += bytesPerLine) {
+      for (int x = 0; x < w; x++, p++) {
+        int c = (bitmap[j + (x >> 3)] << (x & 7) & 0x80) == 0 ? bg : fg;
+        if (ints) intTile[p] = c; else byteTile[p] = (byte) c;
+      }
+    }
+    tile = ints ? intTile : byteTile;
+    tiles.put(new Key().set(glyph, colors), tile);
+    bytes += w * h * (ints ? 4 : 1) + OVERHEAD;
+    for (Iterator<Map.Entry<Key, Object>> iterator = tiles.entrySet().iterator(); bytes > maxBytes; ) {
+      Object evicted = iterator.next().getValue();
+      if (evicted == tile) break;
+      bytes -= (evicted instanceof int[] ? ((int[]) evicted).length * 4 : ((byte[]) evicted).length) + OVERHEAD;
+      iterator.remove();
+    }
+    return tile;
+  }
+
+  /**
+   * Same as BitmapFont.drawCharSimple with the background color, no clipping.
+   * @param xy = x + y * w
+   * @param w image width
+   */
+  public void drawChar(int i, int xy, int w, DataBuffer buffer, int color, int bgColor) {
+    int fw = font.width;
+    if (buffer instanceof DataBufferByte) {
+      byte[] tile = (byte[]) tile(i, color, bgColor, false);
+      byte[] data = ((DataBufferByte) buffer).getData();
+      xy += buffer.getOffset();
+      for (int p = 0; p < tile.length; p += fw, xy += w) System.arraycopy(tile, p, data, xy, fw);
+    } else if (buffer instanceof DataBufferInt) {
+      int[] tile = (int[]) tile(i, color, bgColor, true);
+      int[] data = ((DataBufferInt) buffer).getData();
+      xy += buffer.getOffset();
+      for (int p = 0; p < tile.length; p += fw, xy += w) System.arraycopy(tile, p, data, xy, fw);
+    } else font.drawCharSimple(i, xy, w - fw, buffer, color, bgColor);
+  }
+
+}
@@ -21,13 +21,20 @@ import ab.tui.Tui;
 import ab.tui.TuiUtil;
 
 import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.IndexColorModel;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 public class Tui3 implements Tui {
@@ -39,18 +46,53 @@ public class Tui3 implements Tui {
   private boolean controlScreen;
   private boolean interpolation;
   private int[] colorMap;
-  private boolean update;
-  private boolean open;
-  private final int[] frontBuffer;
-  private final int[] middleBuffer;
-  private final int[] backBuffer;
+  private volatile boolean open;
+  private Thread thread;
+  // triple buffer, the app prints into back, the renderer reads front, they swap through middle
+  private static final int FRESH = 4;
+  private final int[][] buffers = new int[3][];
+  private final int[] bufferSequence = new int[3]; // the last update each buffer has
+  private final AtomicInteger middle = new AtomicInteger(1);
+  private int back = 0;
+  private int front = 2;
+  private int sequence;
+  private final int[] rowSequence; // the last update that changed the row
+  private final boolean[] backDirty; // rows changed since the last update
+  private final int[] drawn; // renderer, the cells in the image
+  private int drawnSequence;
+  private static final int PARALLEL_CELLS = 0x800; // cells in changed rows to render in parallel
+  private volatile Stripe[] stripes;
+  // scroll operations in order, the producer never laps the renderer
+  private static final int SCROLL_LOG = 0x100;
+  private final Scroll[] scrollLog = new Scroll[SCROLL_LOG];
+  private volatile int scrollCount;
+  private volatile int scrollApplied; // renderer
+
+  /**
+   * Logged scroll, immutable so the renderer never sees a half written one.
+   */
+  private static final class Scroll {
+    final int sequence; // of the update that publishes it
+    final int top;
+    final int bottom;
+    final int lines;
+
+    Scroll(int sequence, int top, int bottom, int lines) {
+      this.sequence = sequence;
+      this.top = top;
+      this.bottom = bottom;
+      this.lines = lines;
+    }
+  }
 
   private Tui3(BitmapFont font, Dimension pixelSize) {
     this.font = font;
+    stripes = new Stripe[]{new Stripe(1)};
     size = new Dimension(pixelSize.width / font.width, pixelSize.height / font.height);
-    frontBuffer = new int[size.height * size.width];
-    middleBuffer = new int[size.height * size.width];
-    backBuffer = new int[size.height * size.width];
+    for (int i = 0; i < 3; i++) buffers[i] = new int[size.height * size.width];
+    drawn = new int[size.height * size.width];
+    rowSequence = new int[size.height];
+    backDirty = new boolean[size.height];
   }
 
   /**
@@ -83,7 +125,8 @@ public class Tui3 implements Tui {
           new IndexColorModel(8, colorMap.length, colorMap, 0, false, -1, DataBuffer.TYPE_BYTE));
       screen.interpolation = interpolation;
     }
-    new Thread(this::thread, "tui3").start();
+    thread = new Thread(this::thread, "tui3");
+    thread.start();
     return this;
   }
 
@@ -91,13 +134,22 @@ public class Tui3 implements Tui {
   public void close() {
     if (!open) return;
     open = false;
-    synchronized (middleBuffer) {
-      middleBuffer.notify();
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
     if (controlScreen) screen.close();
-    Arrays.fill(frontBuffer, 0);
-    Arrays.fill(middleBuffer, 0);
-    Arrays.fill(backBuffer, 0);
+    for (int[] buffer : buffers) Arrays.fill(buffer, 0);
+    Arrays.fill(bufferSequence, 0);
+    Arrays.fill(drawn, 0);
+    Arrays.fill(rowSequence, 0);
+    Arrays.fill(backDirty, false);
+    sequence = 0;
+    drawnSequence = 0;
+    scrollCount = 0;
+    scrollApplied = 0;
   }
 
   @Override
@@ -107,29 +159,136 @@ public class Tui3 implements Tui {
 
   private void thread() {
     while (open) {
-      if (update) {
-        update = false;
+      if ((middle.get() & FRESH) != 0) {
+        front = middle.getAndSet(front) & 3;
+        int[] cells = buffers[front];
         int width = screen.image.getWidth();
-        int ww = width - font.width;
         DataBuffer buffer = screen.image.getRaster().getDataBuffer();
-        for (int y = 0, i = 0; y < size.height; y++) {
-          int yy = y * font.height * width;
-          for (int x = 0; x < size.width; x++, i++) {
-            int c = middleBuffer[i];
-            if (frontBuffer[i] == c) continue;
-            frontBuffer[i] = c;
-            font.drawCharSimple(c & 0xFFFFFF, x * font.width + yy, ww, buffer, c >> 24 & 0xF, c >>> 28);
-          }
+        int scrollTop = size.height;
+        int scrollBottom = 0;
+        int scrollCount = this.scrollCount;
+        int applied = scrollApplied;
+        if (scrollCount - applied > SCROLL_LOG / 2) applied = scrollCount; // the moved rows are redrawn
+        for (; applied != scrollCount; applied++) {
+          Scroll scroll = scrollLog[applied & SCROLL_LOG - 1];
+          if (scroll.sequence - bufferSequence[front] > 0) break; // not in this frame yet
+          scrollRaster(scroll.top, scroll.bottom, scroll.lines, buffer, width);
+          scrollTop = Math.min(scrollTop, scroll.top);
+          scrollBottom = Math.max(scrollBottom, scroll.bottom);
+        }
+        scrollApplied = applied; // frees the entries for the producer
+        Stripe[] stripes = this.stripes;
+        int rows = 0;
+        for (int y = 0; y < size.height; y++) if (rowSequence[y] - drawnSequence > 0) rows++;
+        int n = rows * size.width < PARALLEL_CELLS ? 1 : stripes.length;
+        for (int i = 0; i < n; i++) stripes[i].set(cells, buffer, width, size.height * i / n, size.height * (i + 1) / n);
+        if (n == 1) stripes[0].run();
+        else {
+          ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[n];
+          for (int i = 0; i < n; i++) tasks[i] = ForkJoinTask.adapt(stripes[i]);
+          ForkJoinTask.invokeAll(tasks);
+        }
+        int count = 0;
+        int x0 = size.width;
+        int y0 = size.height;
+        int x1 = -1;
+        int y1 = -1;
+        for (int i = 0; i < n; i++) {
+          Stripe stripe = stripes[i];
+          if (stripe.count == 0) continue;
+          count += stripe.count;
+          x0 = Math.min(x0, stripe.x0);
+          x1 = Math.max(x1, stripe.x1);
+          y0 = Math.min(y0, stripe.y0);
+          y1 = stripe.y1;
         }
-        screen.update();
+        drawnSequence = bufferSequence[front];
+        screen.metrics.cellsRedrawn.record(count);
+        if (scrollTop < scrollBottom) {
+          x0 = 0;
+          x1 = size.width - 1;
+          y0 = Math.min(y0, scrollTop);
+          y1 = Math.max(y1, scrollBottom - 1);
+        }
+        if (x0 <= x1) screen.update(new Rectangle(x0 * font.width, y0 * font.height,
+            (x1 - x0 + 1) * font.width, (y1 - y0 + 1) * font.height));
         continue;
       }
-      synchronized (middleBuffer) {
-        try {
-          middleBuffer.wait(250);
-          update = true; // low rate update
-        } catch (InterruptedException e) {
-          open = false;
+      LockSupport.parkNanos(250_000_000);
+    }
+  }
+
+  /**
+   * Renderer, moves the pixels and the drawn cells, the exposed rows are drawn later.
+   */
+  private void scrollRaster(int top, int bottom, int lines, DataBuffer buffer, int width) {
+    int w = size.width;
+    int from = lines > 0 ? top + lines : top;
+    int to = lines > 0 ? top : top - lines;
+    int rows = bottom - top - Math.abs(lines);
+    System.arraycopy(drawn, from * w, drawn, to * w, rows * w);
+    Arrays.fill(drawn, (lines > 0 ? bottom - lines : top) * w, (lines > 0 ? bottom : top - lines) * w, -1);
+    int fh = font.height;
+    if (buffer instanceof DataBufferByte || buffer instanceof DataBufferInt) {
+      Object data = buffer instanceof DataBufferByte
+          ? ((DataBufferByte) buffer).getData() : ((DataBufferInt) buffer).getData();
+      System.arraycopy(data, buffer.getOffset() + from * fh * width,
+          data, buffer.getOffset() + to * fh * width, rows * fh * width);
+    } else {
+      Graphics2D graphics = screen.image.createGraphics();
+      graphics.copyArea(0, from * fh, width, rows * fh, 0, (to - from) * fh);
+      graphics.dispose();
+    }
+  }
+
+  /**
+   * Text rows rendered by one thread, with its own glyph cache.
+   */
+  private final class Stripe implements Runnable {
+    private final GlyphCache glyphCache;
+    private int[] cells;
+    private DataBuffer buffer;
+    private int width;
+    private int from;
+    private int to;
+    private int count;
+    private int x0;
+    private int y0;
+    private int x1;
+    private int y1;
+
+    Stripe(int n) {
+      glyphCache = new GlyphCache(font, 0x400000 / n);
+    }
+
+    void set(int[] cells, DataBuffer buffer, int width, int from, int to) {
+      this.cells = cells;
+      this.buffer = buffer;
+      this.width = width;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public void run() {
+      count = 0;
+      x0 = size.width;
+      y0 = size.height;
+      x1 = -1;
+      y1 = -1;
+      for (int y = from; y < to; y++) {
+        if (rowSequence[y] - drawnSequence <= 0) continue; // a newer row is fine, it will be compared again
+        int yy = y * font.height * width;
+        for (int x = 0, i = y * size.width; x < size.width; x++, i++) {
+          int c = cells[i];
+          if (drawn[i] == c) continue;
+          drawn[i] = c;
+          glyphCache.drawChar(c & 0xFFFFFF, x * font.width + yy, width, buffer, c >> 24 & 0xF, c >>> 28);
+          count++;
+          x0 = Math.min(x0, x);
+          x1 = Math.max(x1, x);
+          y0 = Math.min(y0, y);
+          y1 = y;
         }
       }
     }
@@ -139,16 +298,70 @@ public class Tui3 implements Tui {
   public void print(int x, int y, String s, int attr) {
     attr <<= 24;
     x += y * size.width;
-    for (int i = 0; i < s.length(); i++) backBuffer[x + i] = attr | font.getCode(s.charAt(i));
+    int length = 0; // cells, one per code point
+    int[] cells = buffers[back];
+    for (int i = 0; i < s.length(); length++) {
+      int c = s.codePointAt(i);
+      i += Character.charCount(c);
+      cells[x + length] = attr | font.getCode(c);
+    }
+    if (length > 0) Arrays.fill(backDirty, y, (x + length - 1) / size.width + 1, true);
   }
 
+  /**
+   * Moves the text rows from top inclusive to bottom exclusive up by the number of lines, down if negative.
+   * The exposed rows are cleared. The pixels are moved too, only the exposed rows are drawn.
+   */
+  public void scroll(int top, int bottom, int lines) {
+    if (top < 0 || bottom > size.height || top >= bottom) throw new IllegalArgumentException("scroll region");
+    if (lines == 0) return;
+    int w = size.width;
+    int[] cells = buffers[back];
+    if (Math.abs(lines) >= bottom - top) {
+      Arrays.fill(cells, top * w, bottom * w, font.getCode(' '));
+      Arrays.fill(backDirty, top, bottom, true);
+      return;
+    }
+    int from = lines > 0 ? top + lines : top;
+    int to = lines > 0 ? top : top - lines;
+    System.arraycopy(cells, from * w, cells, to * w, (bottom - top - Math.abs(lines)) * w);
+    Arrays.fill(cells, (lines > 0 ? bottom - lines : top) * w, (lines > 0 ? bottom : top - lines) * w,
+        font.getCode(' '));
+    int count = scrollCount;
+    if (count - scrollApplied >= SCROLL_LOG) { // log full, the renderer redraws instead of moving pixels
+      Arrays.fill(backDirty, true);
+      return;
+    }
+    Arrays.fill(backDirty, top, bottom, true);
+    scrollLog[count & SCROLL_LOG - 1] = new Scroll(sequence + 1, top, bottom, lines);
+    scrollCount = count + 1;
+  }
+
+  /**
+   * Publishes the back buffer without waiting for the renderer. The next back buffer receives only
+   * the rows it has missed, those with a newer sequence.
+   */
   @Override
   public void update() {
-    System.arraycopy(backBuffer, 0, middleBuffer, 0, middleBuffer.length);
-    update = true;
-    synchronized (middleBuffer) {
-      middleBuffer.notify();
+    int s = sequence + 1;
+    boolean changed = false;
+    for (int y = 0; y < size.height; y++) {
+      if (!backDirty[y]) continue;
+      backDirty[y] = false;
+      rowSequence[y] = s;
+      changed = true;
     }
+    if (!changed) return;
+    sequence = s;
+    int[] cells = buffers[back];
+    bufferSequence[back] = s;
+    back = middle.getAndSet(back | FRESH) & 3;
+    int[] next = buffers[back];
+    for (int y = 0, w = size.width; y < size.height; y++) {
+      if (rowSequence[y] - bufferSequence[back] > 0) System.arraycopy(cells, y * w, next, y * w, w);
+    }
+    bufferSequence[back] = s;
+    LockSupport.unpark(thread);
   }
 
   @Override
@@ -156,6 +369,17 @@ public class Tui3 implements Tui {
     screen.keyListener = keyListener;
   }
 
+  /**
+   * Renders big changes in horizontal stripes on the fork-join pool, each stripe is whole text rows.
+   * @param threads number of stripes
+   */
+  public Tui withParallelism(int threads) {
+    Stripe[] stripes = new Stripe[Math.max(threads, 1)];
+    for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe(stripes.length);
+    this.stripes = stripes;
+    return this;
+  }
+
   public Tui withInterpolation() {
     if (controlScreen) {
       interpolation = true;
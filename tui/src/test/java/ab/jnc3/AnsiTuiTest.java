@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import ab.tui.Tui;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnsiTuiTest {
+
+  private static String take(ByteArrayOutputStream output) {
+    String s = output.toString(StandardCharsets.UTF_8).replace('\u001B', '^');
+    output.reset();
+    return s;
+  }
+
+  @Test
+  void update() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (Tui tui = new AnsiTui(output, null, new Dimension(20, 4)).open()) {
+      assertEquals("^[?1049h^[?25l^[0m^[2J", take(output));
+      tui.update();
+      String spaces = " ".repeat(20);
+      assertEquals("^[H^[30;40m" + spaces + "\r\n" + spaces + "\r\n" + spaces + "\r\n" + spaces, take(output));
+      tui.update();
+      assertEquals("", take(output));
+      tui.print(2, 1, "Hi", 0x00);
+      tui.print(5, 1, "x", 0x00);
+      tui.print(9, 1, "y", 0x07); // short gaps of the same color are rewritten, others skipped
+      tui.print(15, 1, "▒", 0x4F);
+      tui.print(0, 2, "z", 0x4F);
+      tui.update();
+      assertEquals("^[2;3HHi x   ^[37my^[5C^[97;44m▒\r\nz", take(output));
+      tui.print(19, 3, "!", 0x4F);
+      tui.print(0, 0, "!", 0x4F);
+      tui.update();
+      assertEquals("^[H!^[4;20H!", take(output));
+    }
+    assertEquals("^[0m^[?25h^[?1049l", take(output));
+  }
+
+  @Test
+  void keys() throws InterruptedException {
+    BlockingQueue<String> keys = new LinkedBlockingQueue<>();
+    byte[] input = "aé\r\u0003\u001B[A\u001B[5~\u001BOP\u001Bx\u007F".getBytes(StandardCharsets.UTF_8);
+    Tui tui = new AnsiTui(new ByteArrayOutputStream(), new ByteArrayInputStream(input), new Dimension(20, 4));
+    tui.setKeyListener(keys::add);
+    tui.open();
+    for (String key : List.of("a", "é", "Enter", "Ctrl+c", "Up", "PageUp", "F1", "Alt+x", "Backspace")) {
+      assertEquals(key, keys.poll(5, TimeUnit.SECONDS));
+    }
+    tui.close();
+  }
+
+}
@@ -89,12 +89,12 @@ class BitmapFontTest {
       ArrayList<Character> list = new ArrayList<>();
       char keyChar = 0;
       int keyChars = 0;
-      if (font.unicodeCache == null) continue;
-      if (IntStream.range(0, font.unicodeCache.length).anyMatch(i -> exclude.contains(font.unicodeCache[i]))) {
+      char[] unicodeCache = font.getUnicodeCache();
+      if (IntStream.range(0, unicodeCache.length).anyMatch(i -> exclude.contains(unicodeCache[i]))) {
         System.out.println(path);
         continue;
       }
-      for (char c : font.unicodeCache) {
+      for (char c : unicodeCache) {
         if (c == '\uFFFF') {
           if (keyChars == 1) map.get(keyChar).addAll(list);
           list.clear();
@@ -212,4 +212,165 @@ class BitmapFontTest {
     //update.run();
     sleep();
   }
+
+  @Test
+  void supplementary() {
+    BitmapFont font = new BitmapFont(8, 8);
+    font.put(0x1F600, 1); // grinning face
+    font.put(0x10FFFF, 2);
+    font.put("e\u0301", 3);
+    assertEquals(1, font.get(0x1F600));
+    assertEquals(2, font.getCode(0x10FFFF));
+    assertEquals(-1, font.get(0x1F601));
+    assertEquals('A', font.get('A'));
+    assertEquals('A', font.get((int) 'A'));
+    assertEquals(-1, font.get('\uD83D'));
+    assertThrows(IllegalArgumentException.class, () -> font.put('\uD83D', 1));
+    byte[] psf = font.toPsf();
+    assertEquals(0x72, psf[0] & 0xFF); // psf2 for supplementary planes
+    BitmapFont copy = BitmapFont.fromPsf(psf);
+    assertEquals(1, copy.get(0x1F600));
+    assertEquals(2, copy.get(0x10FFFF));
+    assertEquals('z', copy.get('z'));
+    assertEquals(3, copy.get("e\u0301"));
+    assertArrayEquals(psf, copy.toPsf2());
+  }
+
+  static BitmapFont pattern() {
+    BitmapFont font = new BitmapFont(9, 4);
+    for (int i = 0; i < font.bitmap.length; i++) font.bitmap[i] = (byte) ((i * 0x4F + 0x35) & (i % 2 == 0 ? 0xFF : 0x80));
+    font.cacheBitmap();
+    return font;
+  }
+
+  @Test
+  void wide() {
+    BitmapFont font = pattern();
+    font.multiply(5, 2); // 45 pixels, two words per row
+    assertEquals(2, font.cacheStride);
+    BufferedImage expected = new BufferedImage(120, 20, BufferedImage.TYPE_INT_RGB);
+    BufferedImage actual = new BufferedImage(120, 20, BufferedImage.TYPE_INT_RGB);
+    font.drawString("AB", 10, 6, expected, 0xFFFFFF, 0x0000FF);
+    font.drawStringSimple("AB", 10, 6, actual, 0xFFFFFF, 0x0000FF);
+    assertArrayEquals(expected.getRGB(0, 0, 120, 20, null, 0, 120), actual.getRGB(0, 0, 120, 20, null, 0, 120));
+  }
+
+  @Test
+  void scaled() {
+    BitmapFont font = pattern();
+    BitmapFont multiplied = pattern();
+    multiplied.multiply(3, 2);
+    BufferedImage expected = new BufferedImage(50, 20, BufferedImage.TYPE_BYTE_INDEXED);
+    BufferedImage actual = new BufferedImage(50, 20, BufferedImage.TYPE_BYTE_INDEXED);
+    multiplied.drawString("AB", -5, 7, expected, 0xFF0000, 0x00FF00);
+    font.drawStringScaled("AB", -5, 7, actual, 0xFF0000, 0x00FF00, 3, 2);
+    assertArrayEquals(expected.getRGB(0, 0, 50, 20, null, 0, 50), actual.getRGB(0, 0, 50, 20, null, 0, 50));
+    multiplied.drawString("BA", 20, -3, expected, 0x0000FF);
+    font.drawStringScaled("BA", 20, -3, actual, 0x0000FF, 3, 2); // transparent
+    assertArrayEquals(expected.getRGB(0, 0, 50, 20, null, 0, 50), actual.getRGB(0, 0, 50, 20, null, 0, 50));
+  }
+
+  @Test
+  void blitters() {
+    BitmapFont narrow = pattern();
+    BitmapFont wide = pattern();
+    wide.multiply(7, 1); // 63 pixels, two long chunks in binary images
+    for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_INDEXED,
+        BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_USHORT_565_RGB}) {
+      for (BitmapFont font : new BitmapFont[]{narrow, wide}) {
+        BufferedImage expected = new BufferedImage(101, 9, type);
+        BufferedImage actual = new BufferedImage(101, 9, type);
+        for (int x = -70; x < 101; x += 13) {
+          font.drawStringScaled("AB", x, x % 3 - 1, expected, 0xFFFFFF, 0, 1, 1); // raster data elements
+          font.drawString("AB", x, x % 3 - 1, actual, 0xFFFFFF, 0);
+          font.drawStringScaled("C", x + 5, 3 - x % 4, expected, 0, 1, 1);
+          font.drawString("C", x + 5, 3 - x % 4, actual, 0);
+        }
+        assertArrayEquals(expected.getRGB(0, 0, 101, 9, null, 0, 101), actual.getRGB(0, 0, 101, 9, null, 0, 101));
+      }
+    }
+  }
+
+  @Test
+  void mapped() throws IOException {
+    BitmapFont psf1 = new BitmapFont(8, 8);
+    for (int i = 0; i < psf1.bitmap.length; i++) psf1.bitmap[i] = (byte) (i * 0x4F + 0x35);
+    psf1.put('\u00E9', 1);
+    psf1.put("e\u0301", 1);
+    BitmapFont psf2 = pattern();
+    psf2.put(0x1F600, 2);
+    psf2.put('\u00E9', 3);
+    psf2.put("e\u0301", 3);
+    for (BitmapFont font : new BitmapFont[]{psf1, psf2}) {
+      Path file = Files.createTempFile("font", ".psfu");
+      try {
+        Files.write(file, font.toPsf());
+        BitmapFont expected = BitmapFont.fromPsf(Files.readAllBytes(file));
+        BitmapFont actual = BitmapFont.fromPsf(file);
+        for (int c : new int[]{'A', '~', 0xE9, 0x1F600, 0x1F601}) assertEquals(expected.get(c), actual.get(c));
+        assertEquals(expected.get("e\u0301"), actual.get("e\u0301"));
+        BufferedImage expectedImage = new BufferedImage(40, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage actualImage = new BufferedImage(40, 10, BufferedImage.TYPE_INT_RGB);
+        expected.drawStringSimple("Hi\u00E9", 1, 1, expectedImage, 0xFFFFFF, 0x0000FF);
+        actual.drawStringSimple("Hi\u00E9", 1, 1, actualImage, 0xFFFFFF, 0x0000FF);
+        assertArrayEquals(expectedImage.getRGB(0, 0, 40, 10, null, 0, 40), actualImage.getRGB(0, 0, 40, 10, null, 0, 40));
+        assertNull(actual.bitmap); // rows decoded from the mapping
+        assertNull(actual.unicodeCache);
+        assertArrayEquals(expected.getBitmap(), actual.getBitmap());
+        assertArrayEquals(Files.readAllBytes(file), actual.toPsf());
+      } finally {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  void copy() {
+    BitmapFont font = pattern();
+    font.put('\u00E9', 1);
+    BitmapFont copy = font.copy();
+    copy.put('\u00EA', 2);
+    copy.put('A', 3);
+    font.put('\u00EB', 4);
+    assertEquals(1, copy.get('\u00E9'));
+    assertEquals(2, copy.get('\u00EA'));
+    assertEquals(3, copy.get('A'));
+    assertEquals(-1, copy.get('\u00EB'));
+    assertEquals(-1, font.get('\u00EA'));
+    assertEquals('A', font.get('A'));
+    assertEquals(4, font.get('\u00EB'));
+    copy.bitmap[0] ^= 1;
+    assertNotEquals(copy.bitmap[0], font.bitmap[0]);
+  }
+
+  @Test
+  void fromImage() {
+    BitmapFont font = pattern();
+    BufferedImage image = new BufferedImage(3 + 16 * 10 - 1, 1 + 16 * 6 - 2, BufferedImage.TYPE_INT_RGB);
+    for (int i = 0; i < 0x100; i++) font.drawCharSimple(i, 3 + i % 16 * 10 + (1 + i / 16 * 6) * image.getWidth(),
+        image.getWidth() - font.width, image.getRaster().getDataBuffer(), 0xFFFFFF);
+    BitmapFont ints = BitmapFont.fromImageRgb(image, 9, 4, 16, 16, 1, 2, 3, 1, p -> (p & 0xFFFFFF) != 0);
+    BitmapFont boxed = BitmapFont.fromImage(image, 9, 4, 16, 16, 1, 2, 3, 1, p -> (p & 0xFFFFFF) != 0);
+    assertArrayEquals(font.bitmap, ints.bitmap);
+    assertArrayEquals(font.bitmap, boxed.bitmap);
+  }
+
+  @Disabled
+  @Test
+  void testLookupPerformance() {
+    BitmapFont font = new BitmapFont(8, 16);
+    for (char c = 0; c < 0x200; c++) font.put((char) (0x400 + c), c & 0xFF);
+    String s = IntStream.range(0, 0x1000).mapToObj(i -> String.valueOf((char) (0x380 + i % 0x300)))
+        .collect(Collectors.joining());
+    for (int n = 0; n < 10; n++) {
+      long sum = 0;
+      long timeChar = System.nanoTime();
+      for (int j = 0; j < 1000; j++) for (int i = 0; i < s.length(); i++) sum += font.get(s.charAt(i));
+      timeChar = System.nanoTime() - timeChar;
+      long timeCodePoint = System.nanoTime();
+      for (int j = 0; j < 1000; j++) for (int i = 0; i < s.length(); i++) sum += font.get(s.codePointAt(i));
+      timeCodePoint = System.nanoTime() - timeCodePoint;
+      System.out.printf("char %d ms, code point %d ms, %d%n", timeChar / 1_000_000, timeCodePoint / 1_000_000, sum);
+    }
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompositeFontTest {
+
+  @Test
+  void fallback() {
+    BitmapFont small = Tui3Test.font(); // 4x4, A is filled, B is the left half
+    BitmapFont large = new BitmapFont(8, 8);
+    Arrays.fill(large.bitmap, 'B' * 8, 'B' * 8 + 8, (byte) 0xFF);
+    Arrays.fill(large.bitmap, 0x80 * 8, 0x80 * 8 + 8, (byte) 0xF0); // left half
+    large.put('é', 0x80);
+    large.put(0x1F600, 'B');
+    CompositeFont font = new CompositeFont(small, large);
+    assertEquals('A', font.get('A'));
+    assertEquals(0x100, font.get('é'));
+    assertEquals(0x101, font.get(0x1F600));
+    assertEquals(0x100, font.getCode('é')); // resolved once
+    assertEquals(1 << 16 | 0x80, font.getSource(0x100));
+    assertEquals(-1, font.get('ж'));
+    assertTrue(font.canDisplay(0x1F600));
+    assertFalse(font.canDisplay('ж'));
+
+    BufferedImage image = new BufferedImage(12, 4, BufferedImage.TYPE_INT_RGB);
+    font.drawStringSimple("Bé😀", 0, 0, image, 0xFFFFFF);
+    int[] expected = {1, 1, 0, 0, 1, 1, 0, 0, 1, 1, 1, 1};
+    for (int x = 0; x < expected.length; x++) assertEquals(expected[x] * 0xFFFFFF, image.getRGB(x, 2) & 0xFFFFFF);
+  }
+
+}
@@ -95,7 +95,7 @@ public class FontBuilderTest {
       int h = address[p++];
       BitmapFont font = new BitmapFont(8, h);
       System.arraycopy(b, address[p++], font.bitmap, 0, h * 0x100);
-      font.unicodeCache = default8x16.unicodeCache;
+      font.unicodeCache = default8x16.getUnicodeCache();
       fonts[i] = font;
     }
     BitmapFont font = new BitmapFont(9, 16);
@@ -107,7 +107,7 @@ public class FontBuilderTest {
       for (int i = 0; i < 16; i++) font.bitmap[(i + c) * 2] = b[p++];
     }
     for (int i = 0xC00; i < 0xE00; i++) font.bitmap[i * 2 + 1] = (byte) (font.bitmap[i * 2] << 7);
-    font.unicodeCache = default8x16.unicodeCache;
+    font.unicodeCache = default8x16.getUnicodeCache();
     fonts[3] = font;
     return fonts;
   }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FontConverterTest {
+
+  static BitmapFont font() {
+    byte[] fnt = new byte[0x800];
+    for (int i = 0; i < fnt.length; i++) fnt[i] = (byte) (i * 0x4F + 0x35);
+    return FontConverter.fromFnt(fnt);
+  }
+
+  static void assertGlyphs(BitmapFont expected, BitmapFont actual) {
+    for (char c : "A~é░▒".toCharArray()) {
+      int e = expected.get(c) * expected.byteSize;
+      int a = actual.get(c) * actual.byteSize;
+      assertArrayEquals(
+          Arrays.copyOfRange(expected.bitmap, e, e + expected.byteSize),
+          Arrays.copyOfRange(actual.bitmap, a, a + actual.byteSize), String.valueOf(c));
+    }
+  }
+
+  @Test
+  void formats() throws IOException {
+    BitmapFont font = font();
+    for (FontConverter.Format format : FontConverter.Format.values()) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      FontConverter.write(font, format, Channels.newChannel(output));
+      assertGlyphs(font, FontConverter.read(output.toByteArray()));
+    }
+  }
+
+  @Test
+  void convert() throws IOException {
+    Path source = Files.createTempDirectory("fonts");
+    Path target = source.resolve("pf2");
+    try {
+      Files.write(source.resolve("a.fnt"), FontConverter.toFnt(font()));
+      Files.write(source.resolve("b.psfu"), font().toPsf2());
+      Files.write(source.resolve("c.txt"), new byte[]{1, 2, 3});
+      ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+      FontConverter.write(font(), FontConverter.Format.PSF2_GZIP, Channels.newChannel(gzip));
+      Files.write(source.resolve("d.psf.gz"), gzip.toByteArray());
+      List<FontConverter.Result> results = new FontConverter().convert(source, target, FontConverter.Format.PF2);
+      assertEquals(4, results.size());
+      assertNull(results.get(0).exception);
+      assertNull(results.get(1).exception);
+      assertNotNull(results.get(2).exception);
+      assertNull(results.get(3).exception);
+      assertGlyphs(font(), FontConverter.read(Files.readAllBytes(target.resolve("b.pf2"))));
+      assertEquals(results.get(0).bytesWritten, Files.size(target.resolve("a.pf2")));
+      assertGlyphs(font(), FontConverter.read(Files.readAllBytes(target.resolve("d.pf2"))));
+    } finally {
+      try (Stream<Path> walk = Files.walk(source)) {
+        walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+}
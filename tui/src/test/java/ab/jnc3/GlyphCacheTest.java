@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlyphCacheTest {
+
+  @Test
+  void drawChar() {
+    BitmapFont font = new BitmapFont(12, 3);
+    for (int i = 0; i < font.bitmap.length; i++) font.bitmap[i] = (byte) (i * 37);
+    font.cacheBitmap();
+    GlyphCache cache = new GlyphCache(font, 1 << 20);
+    for (int type : new int[]{BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_INT_RGB}) {
+      BufferedImage expected = new BufferedImage(36, 6, type);
+      BufferedImage actual = new BufferedImage(36, 6, type);
+      for (int i = 0; i < 6; i++) {
+        int xy = i % 3 * 12 + i / 3 * 3 * 36;
+        font.drawCharSimple(i + 0x40, xy, 36 - 12, expected.getRaster().getDataBuffer(), i + 1, 7);
+        cache.drawChar(i + 0x40, xy, 36, actual.getRaster().getDataBuffer(), i + 1, 7);
+      }
+      DataBuffer e = expected.getRaster().getDataBuffer();
+      DataBuffer a = actual.getRaster().getDataBuffer();
+      for (int i = 0; i < e.getSize(); i++) assertEquals(e.getElem(i), a.getElem(i), Integer.toString(i));
+    }
+    assertEquals(12, cache.size());
+  }
+
+  @Test
+  void rgb() {
+    BitmapFont font = new BitmapFont(8, 8);
+    GlyphCache cache = new GlyphCache(font, 1 << 20);
+    BufferedImage image = new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB);
+    DataBuffer buffer = image.getRaster().getDataBuffer();
+    cache.drawChar(0, 0, 16, buffer, 0xFFFFFF, 0xFF0000);
+    cache.drawChar(0, 8, 16, buffer, 0xFFFFFF, 0x00FF00); // same low byte
+    assertEquals(0xFF0000, image.getRGB(0, 0) & 0xFFFFFF);
+    assertEquals(0x00FF00, image.getRGB(8, 0) & 0xFFFFFF);
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void evict() {
+    BitmapFont font = new BitmapFont(8, 8);
+    GlyphCache cache = new GlyphCache(font, 1000);
+    DataBuffer buffer = new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_INDEXED).getRaster().getDataBuffer();
+    for (int i = 0; i < 0x100; i++) cache.drawChar(i, 0, 8, buffer, 1, 0);
+    assertTrue(cache.getBytes() <= 1000);
+    assertEquals(1000 / (64 + 0x40), cache.size());
+    cache.clear();
+    assertEquals(0, cache.getBytes());
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2025 Aleksei Balan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ab.jnc3;
+
+import ab.tui.Tui;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Tui3Test {
+
+  static final int[] COLOR_MAP = {0x000000, 0xAA0000, 0x00AA00, 0xAA5500, 0x0000AA, 0xAA00AA, 0x00AAAA, 0xAAAAAA};
+
+  /**
+   * 4x4 font, A is a filled square, B is the left half.
+   */
+  static BitmapFont font() {
+    BitmapFont font = new BitmapFont(4, 4);
+    Arrays.fill(font.bitmap, 'A' * 4, 'A' * 4 + 4, (byte) 0xF0);
+    Arrays.fill(font.bitmap, 'B' * 4, 'B' * 4 + 4, (byte) 0xC0);
+    font.cacheBitmap();
+    return font;
+  }
+
+  static Screen screen(BlockingQueue<BufferedImage> frames) {
+    Screen screen = new Screen(frames::add);
+    screen.image = new BufferedImage(32, 16, BufferedImage.TYPE_BYTE_INDEXED,
+        new IndexColorModel(8, COLOR_MAP.length, COLOR_MAP, 0, false, -1, DataBuffer.TYPE_BYTE));
+    return screen;
+  }
+
+  @Test
+  void update() throws InterruptedException {
+    BlockingQueue<BufferedImage> frames = new LinkedBlockingQueue<>();
+    Screen screen = screen(frames);
+    try (Tui tui = new Tui3(font(), screen).open()) {
+      assertEquals(8, tui.getSize().width);
+      tui.print(1, 2, "AB", 0x12);
+      tui.update();
+      BufferedImage frame = frames.poll(5, TimeUnit.SECONDS);
+      assertNotNull(frame);
+      assertEquals(COLOR_MAP[2] | 0xFF000000, frame.getRGB(4, 8));
+      assertEquals(COLOR_MAP[2] | 0xFF000000, frame.getRGB(9, 11));
+      assertEquals(COLOR_MAP[1] | 0xFF000000, frame.getRGB(10, 11));
+      assertEquals(0xFF000000, frame.getRGB(3, 8));
+      assertEquals(2, screen.metrics.cellsRedrawn.getMax());
+      tui.print(1, 2, "AB", 0x12); // nothing changed
+      tui.update();
+      assertNull(frames.poll(400, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  void manyUpdates() throws InterruptedException {
+    BlockingQueue<BufferedImage> frames = new LinkedBlockingQueue<>();
+    Screen screen = screen(frames);
+    int[] expected = new int[8 * 4];
+    try (Tui tui = new Tui3(font(), screen).open()) {
+      for (int i = 0; i < 10000; i++) {
+        int x = i % 8;
+        int y = i / 8 % 4;
+        int color = 1 + i % 7;
+        tui.print(x, y, "A", color);
+        expected[y * 8 + x] = color;
+        tui.update(); // the renderer skips most of them
+      }
+      while (frames.poll(400, TimeUnit.MILLISECONDS) != null);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(COLOR_MAP[expected[i]] | 0xFF000000, screen.image.getRGB(i % 8 * 4 + 1, i / 8 * 4 + 1));
+      }
+    }
+  }
+
+  @Test
+  void parallel() throws InterruptedException {
+    BlockingQueue<BufferedImage> frames = new LinkedBlockingQueue<>();
+    Screen screen = new Screen(frames::add);
+    screen.image = new BufferedImage(512, 256, BufferedImage.TYPE_BYTE_INDEXED,
+        new IndexColorModel(8, COLOR_MAP.length, COLOR_MAP, 0, false, -1, DataBuffer.TYPE_BYTE));
+    try (Tui tui = new Tui3(font(), screen).withParallelism(4).open()) {
+      String row = "B".repeat(128);
+      for (int y = 0; y < 64; y++) tui.print(0, y, row, 0x10 | y % 7 + 1);
+      tui.update();
+      BufferedImage frame = frames.poll(5, TimeUnit.SECONDS);
+      assertNotNull(frame);
+      assertEquals(128 * 64, screen.metrics.cellsRedrawn.getMax());
+      for (int y = 0; y < 64; y++) {
+        assertEquals(COLOR_MAP[y % 7 + 1] | 0xFF000000, frame.getRGB(y * 8, y * 4 + 2));
+        assertEquals(COLOR_MAP[1] | 0xFF000000, frame.getRGB(y * 8 + 3, y * 4 + 2));
+      }
+    }
+  }
+
+  @Test
+  void scroll() throws InterruptedException {
+    BlockingQueue<BufferedImage> frames = new LinkedBlockingQueue<>();
+    Screen screen = screen(frames);
+    try (Tui3 tui = new Tui3(font(), screen)) {
+      tui.open();
+      for (int y = 0; y < 4; y++) tui.print(0, y, "AAAAAAAA", y + 1);
+      tui.update();
+      assertNotNull(frames.poll(5, TimeUnit.SECONDS));
+      screen.metrics.cellsRedrawn.reset();
+      tui.scroll(0, 4, 1);
+      tui.print(0, 3, "AAAAAAAA", 5);
+      tui.update();
+      BufferedImage frame = frames.poll(5, TimeUnit.SECONDS);
+      assertNotNull(frame);
+      assertEquals(8, screen.metrics.cellsRedrawn.getMax()); // only the exposed row
+      for (int y = 0; y < 4; y++) assertEquals(COLOR_MAP[y + 2] | 0xFF000000, frame.getRGB(30, y * 4 + 3));
+      tui.scroll(1, 4, -2);
+      tui.update();
+      assertNotNull(frames.poll(5, TimeUnit.SECONDS));
+      int[] expected = {2, 0, 0, 3};
+      for (int y = 0; y < 4; y++) assertEquals(COLOR_MAP[expected[y]] | 0xFF000000, screen.image.getRGB(0, y * 4));
+      for (int i = 0; i < 0x180; i++) { // more than the log holds before an update
+        tui.scroll(0, 4, 1);
+        tui.print(0, 3, "AAAAAAAA", i % 4 + 1);
+      }
+      tui.update();
+      assertNotNull(frames.poll(5, TimeUnit.SECONDS));
+      for (int y = 0; y < 4; y++) assertEquals(COLOR_MAP[(0x17C + y) % 4 + 1] | 0xFF000000, screen.image.getRGB(0, y * 4));
+    }
+  }
+
+}